@@ -16,13 +16,23 @@
 
 package org.flcit.springboot.commons.storage;
 
+import java.nio.file.Paths;
+import java.util.Map;
+
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.util.unit.DataSize;
 
 import org.flcit.springboot.commons.storage.configuration.StorageProperties;
+import org.flcit.springboot.commons.storage.configuration.TaskDefinitionsRegistrar;
+import org.flcit.springboot.commons.storage.configuration.UsageProperties;
+import org.flcit.springboot.commons.storage.notification.StorageNotifier;
 import org.flcit.springboot.commons.storage.service.StorageService;
+import org.flcit.springboot.commons.storage.usage.StorageUsage;
 
 /**
  * 
@@ -35,4 +45,42 @@ import org.flcit.springboot.commons.storage.service.StorageService;
 @Import(StorageService.class)
 public class CommonsStorageAutoConfiguration {
 
+    /**
+     * @return the registrar of the tasks declared in the properties <code>storage.tasks</code>
+     */
+    @Bean
+    public static TaskDefinitionsRegistrar storageTaskDefinitionsRegistrar() {
+        return new TaskDefinitionsRegistrar();
+    }
+
+    /**
+     * @return the notifier of the files written by {@link StorageService} to the tasks of their directory
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public StorageNotifier storageNotifier() {
+        return new StorageNotifier();
+    }
+
+    /**
+     * @param storageProperties
+     * @return the usage of the directories of the storage, maintained by {@link StorageService} and the tasks
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "storage.usage", name = "enabled", havingValue = "true")
+    public StorageUsage storageUsage(StorageProperties storageProperties) {
+        final UsageProperties properties = storageProperties.getUsage();
+        final StorageUsage usage = new StorageUsage(storageProperties.getLocation(), properties.getReconcileInterval());
+        if (properties.getDirectories() != null) {
+            for (String directory : properties.getDirectories()) {
+                usage.track(Paths.get(directory), -1);
+            }
+        }
+        for (Map.Entry<String, DataSize> quota : properties.getQuotas().entrySet()) {
+            usage.track(Paths.get(quota.getKey()), quota.getValue().toBytes());
+        }
+        return usage;
+    }
+
 }
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.actuate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import org.flcit.springboot.commons.storage.latency.LatencyHistogram;
+import org.flcit.springboot.commons.storage.latency.LatencyTracker;
+import org.flcit.springboot.commons.storage.task.FileState;
+import org.flcit.springboot.commons.storage.task.FilesBackgroundTask;
+
+/**
+ * Endpoint <code>storagetasks</code> listing the {@link FilesBackgroundTask} beans by bean name.
+ * <p>
+ * A task is controlled by a write operation with the action <code>pause</code>, <code>resume</code>, <code>rescan</code>
+ * or <code>concurrency</code> with the new number of threads.
+ * <p>
+ * The files in progress of a task are limited to <code>limit</code>, {@value #DEFAULT_LIMIT} by default and
+ * {@value #MAX_LIMIT} at most.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@Endpoint(id = "storagetasks")
+public class FilesBackgroundTasksEndpoint {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private final ListableBeanFactory beanFactory;
+
+    /**
+     * @param beanFactory
+     */
+    public FilesBackgroundTasksEndpoint(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * @return the summary of the tasks by bean name
+     */
+    @ReadOperation
+    public Map<String, TaskDescriptor> tasks() {
+        final Map<String, TaskDescriptor> tasks = new LinkedHashMap<>();
+        for (Map.Entry<String, FilesBackgroundTask> task : getTasks().entrySet()) {
+            tasks.put(task.getKey(), new TaskDescriptor(task.getValue(), 0));
+        }
+        return tasks;
+    }
+
+    /**
+     * @param name the name of the bean
+     * @param limit the maximum number of files in progress returned
+     * @return the task with its files in progress, null if it does not exist
+     */
+    @ReadOperation
+    public TaskDescriptor task(@Selector String name, @Nullable Integer limit) {
+        if (limit != null && limit < 0) {
+            throw new InvalidEndpointRequestException("The limit must be positive", "Invalid limit");
+        }
+        final FilesBackgroundTask task = getTasks().get(name);
+        return task != null ? new TaskDescriptor(task, limit != null ? Math.min(limit, MAX_LIMIT) : DEFAULT_LIMIT) : null;
+    }
+
+    /**
+     * @param name the name of the bean
+     * @param action pause, resume, rescan or concurrency
+     * @param concurrency the number of threads for the action concurrency
+     * @return the task after the action, null if it does not exist
+     */
+    @WriteOperation
+    public TaskDescriptor control(@Selector String name, String action, @Nullable Integer concurrency) {
+        final FilesBackgroundTask task = getTasks().get(name);
+        if (task == null) {
+            return null;
+        }
+        switch (action) {
+        case "pause":
+            task.pause();
+            break;
+        case "resume":
+            task.resume();
+            break;
+        case "rescan":
+            task.rescan();
+            break;
+        case "concurrency":
+            setConcurrency(task, concurrency);
+            break;
+        default:
+            throw new InvalidEndpointRequestException("Unknown action: " + action, "Invalid action");
+        }
+        return new TaskDescriptor(task, 0);
+    }
+
+    private static void setConcurrency(FilesBackgroundTask task, Integer concurrency) {
+        if (concurrency == null) {
+            throw new InvalidEndpointRequestException("The concurrency is required", "Missing concurrency");
+        }
+        try {
+            task.setConcurrency(concurrency);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), "Invalid concurrency", e);
+        }
+    }
+
+    private Map<String, FilesBackgroundTask> getTasks() {
+        return beanFactory.getBeansOfType(FilesBackgroundTask.class, false, false);
+    }
+
+    /**
+     * State of a task.
+     */
+    public static final class TaskDescriptor {
+
+        private final String path;
+        private final boolean paused;
+        private final int concurrency;
+        private final int running;
+        private final int retrying;
+        private final int pending;
+        private final long started;
+        private final long retried;
+        private final long lastScanTime;
+        private final long lastScanDuration;
+        private final long oldestPendingAge;
+        private final Map<LatencyTracker.Stage, LatencyDescriptor> latencies;
+        private final List<FileDescriptor> files;
+        private final boolean truncated;
+
+        private TaskDescriptor(FilesBackgroundTask task, int limit) {
+            this.path = String.valueOf(task.getPath());
+            this.paused = task.isPaused();
+            this.concurrency = task.getConcurrency();
+            int runningCount = 0;
+            int retryingCount = 0;
+            int pendingCount = 0;
+            final List<FileDescriptor> list = limit > 0 ? new ArrayList<>(Math.min(limit, DEFAULT_LIMIT)) : null;
+            boolean truncatedList = false;
+            for (FileState state : task.getFileStates().values()) {
+                switch (state.getStatus()) {
+                case RUNNING:
+                    runningCount++;
+                    break;
+                case RETRYING:
+                    retryingCount++;
+                    break;
+                case STABLE:
+                    pendingCount++;
+                    break;
+                default:
+                    break;
+                }
+                if (list != null) {
+                    if (list.size() < limit) {
+                        list.add(new FileDescriptor(state));
+                    } else {
+                        truncatedList = true;
+                    }
+                }
+            }
+            this.running = runningCount;
+            this.retrying = retryingCount;
+            this.pending = pendingCount;
+            this.started = task.getStartedTasks();
+            this.retried = task.getRetriedTasks();
+            this.lastScanTime = task.getLastScanTime();
+            this.lastScanDuration = task.getLastScanDuration();
+            this.oldestPendingAge = task.getOldestPendingAge();
+            final Map<LatencyTracker.Stage, LatencyDescriptor> map = new LinkedHashMap<>();
+            for (Map.Entry<LatencyTracker.Stage, LatencyHistogram> histogram : task.getLatencyTracker().getHistograms().entrySet()) {
+                map.put(histogram.getKey(), new LatencyDescriptor(histogram.getValue()));
+            }
+            this.latencies = map;
+            this.files = list != null ? list : Collections.emptyList();
+            this.truncated = truncatedList;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isPaused() {
+            return paused;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * @return the number of files in progress
+         */
+        public int getRunning() {
+            return running;
+        }
+
+        /**
+         * @return the number of files waiting for a retry
+         */
+        public int getRetrying() {
+            return retrying;
+        }
+
+        /**
+         * @return the number of files waiting for a thread of the executor
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getRetried() {
+            return retried;
+        }
+
+        public long getLastScanTime() {
+            return lastScanTime;
+        }
+
+        public long getLastScanDuration() {
+            return lastScanDuration;
+        }
+
+        public long getOldestPendingAge() {
+            return oldestPendingAge;
+        }
+
+        public Map<LatencyTracker.Stage, LatencyDescriptor> getLatencies() {
+            return latencies;
+        }
+
+        public List<FileDescriptor> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return true if the files in progress exceed the limit of the request
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+    }
+
+    /**
+     * Percentiles in milliseconds of a stage.
+     */
+    public static final class LatencyDescriptor {
+
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        private LatencyDescriptor(LatencyHistogram histogram) {
+            this.count = histogram.getCount();
+            this.mean = histogram.getMean();
+            this.p50 = histogram.getPercentile(50);
+            this.p90 = histogram.getPercentile(90);
+            this.p99 = histogram.getPercentile(99);
+            this.max = histogram.getMax();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+    }
+
+    /**
+     * File in progress.
+     */
+    public static final class FileDescriptor {
+
+        private final String file;
+        private final FileState.Status status;
+        private final long arrivalTime;
+        private final long statusTime;
+        private final long size;
+        private final int attempts;
+
+        private FileDescriptor(FileState state) {
+            this.file = String.valueOf(state.getFile());
+            this.status = state.getStatus();
+            this.arrivalTime = state.getArrivalTime();
+            this.statusTime = state.getStatusTime();
+            this.size = state.getSize();
+            this.attempts = state.getAttempts();
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public FileState.Status getStatus() {
+            return status;
+        }
+
+        public long getArrivalTime() {
+            return arrivalTime;
+        }
+
+        public long getStatusTime() {
+            return statusTime;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.actuate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.flcit.springboot.commons.storage.usage.DirectoryUsage;
+import org.flcit.springboot.commons.storage.usage.StorageUsage;
+
+/**
+ * Gauges <code>storage.usage.bytes</code>, <code>storage.usage.files</code> and <code>storage.usage.quota</code> of the tracked directories,
+ * tagged by the directory relative to the root of the storage.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class StorageUsageMetrics implements MeterBinder {
+
+    private final StorageUsage usage;
+
+    /**
+     * @param usage
+     */
+    public StorageUsageMetrics(StorageUsage usage) {
+        this.usage = usage;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (DirectoryUsage directory : usage.getUsages()) {
+            final String name = getName(directory);
+            Gauge.builder("storage.usage.bytes", directory, DirectoryUsage::getBytes)
+                    .tag("directory", name)
+                    .baseUnit("bytes")
+                    .description("Bytes of the regular files of the directory")
+                    .register(registry);
+            Gauge.builder("storage.usage.files", directory, DirectoryUsage::getFiles)
+                    .tag("directory", name)
+                    .description("Number of regular files of the directory")
+                    .register(registry);
+            if (directory.getQuota() >= 0) {
+                Gauge.builder("storage.usage.quota", directory, DirectoryUsage::getQuota)
+                        .tag("directory", name)
+                        .baseUnit("bytes")
+                        .description("Maximum bytes of the directory")
+                        .register(registry);
+            }
+        }
+    }
+
+    private String getName(DirectoryUsage directory) {
+        final String name = usage.getRoot().relativize(directory.getDirectory()).toString().replace('\\', '/');
+        return name.isEmpty() ? "." : name;
+    }
+
+}
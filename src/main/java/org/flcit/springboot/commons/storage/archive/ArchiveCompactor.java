@@ -0,0 +1,505 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Roll the files of the closed day directories of an archive into ZIP segments.
+ * <p>
+ * The segments and their {@link ArchiveIndex} are written in the {@link ArchiveIndex#SEGMENTS_DIRECTORY} of the day directory
+ * and the files are deleted once the index is written, so an interrupted compaction is done again by the next one.
+ * The files are streamed into the segments without being listed in memory, and their entries are sorted into the index
+ * by runs of a bounded size merged with the entries of the previous compactions.
+ * The first run deletes the temporary files and the segments missing from the index left by a crash.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class ArchiveCompactor implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveCompactor.class);
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String ENTRIES_FILENAME = "entries";
+    private static final int RUN_SIZE = 100000;
+
+    private final Path root;
+    private final long maxSegmentSize;
+    private final int runSize;
+    private volatile boolean recovered;
+
+    /**
+     * @param root the root of the {@code yyyy/MM/d} tree
+     * @param maxSegmentSize the size in bytes of the archived files from which a new segment is started
+     */
+    public ArchiveCompactor(Path root, long maxSegmentSize) {
+        this(root, maxSegmentSize, RUN_SIZE);
+    }
+
+    /**
+     * @param root
+     * @param maxSegmentSize
+     * @param runSize the number of entries sorted in memory
+     */
+    ArchiveCompactor(Path root, long maxSegmentSize, int runSize) {
+        this.root = root;
+        this.maxSegmentSize = maxSegmentSize;
+        this.runSize = runSize;
+    }
+
+    @Override
+    public void run() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try {
+            final LocalDate today = LocalDate.now();
+            final boolean recover = !recovered;
+            for (ArchiveLayout.Day day : ArchiveLayout.listDays(root)) {
+                if (recover) {
+                    recover(day.getPath());
+                }
+                if (day.getDate().isBefore(today)) {
+                    compact(day.getPath());
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+            recovered = true;
+        } catch (IOException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("ArchiveCompactor run - %s", root), e);
+            }
+        }
+    }
+
+    /**
+     * Delete the temporary files and the segments missing from the index left by an interrupted compaction,
+     * their files are still in the day directory.
+     * @param day
+     * @return the number of files deleted
+     * @throws IOException
+     */
+    public int recover(Path day) throws IOException {
+        final Path segmentsDirectory = day.resolve(ArchiveIndex.SEGMENTS_DIRECTORY);
+        if (!Files.isDirectory(segmentsDirectory)) {
+            return 0;
+        }
+        final Set<String> indexed = readSegmentNames(ArchiveIndex.getIndexFile(day));
+        int deleted = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(segmentsDirectory)) {
+            for (Path file : stream) {
+                final String name = file.getFileName().toString();
+                if ((name.endsWith(TMP_SUFFIX) || (name.endsWith(ArchiveIndex.SEGMENT_SUFFIX) && !indexed.contains(name)))
+                        && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0 && LOG.isInfoEnabled()) {
+            LOG.info("ArchiveCompactor recover - {} : {} files deleted", day, deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * @param day
+     * @return the number of files compacted
+     * @throws IOException
+     */
+    public int compact(Path day) throws IOException {
+        final Path segmentsDirectory = day.resolve(ArchiveIndex.SEGMENTS_DIRECTORY);
+        final Path indexFile = ArchiveIndex.getIndexFile(day);
+        final Path indexTmp = indexFile.resolveSibling(ArchiveIndex.INDEX_FILENAME + TMP_SUFFIX);
+        final SegmentWriter writer = new SegmentWriter(day, segmentsDirectory);
+        boolean committed = false;
+        try {
+            try (writer) {
+                // the files are streamed into the segments, only the names of the segments are kept
+                Files.walkFileTree(day, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        return dir.equals(segmentsDirectory) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        if (attrs.isRegularFile()) {
+                            writer.add(file, attrs);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            if (writer.count == 0) {
+                return 0;
+            }
+            sort(writer.entries, indexFile, indexTmp);
+            for (Path segmentTmp : writer.segments) {
+                Files.move(segmentTmp, getSegment(segmentTmp), StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(indexTmp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        } finally {
+            writer.cleanUp(committed);
+            if (!committed) {
+                deleteQuietly(indexTmp);
+            }
+        }
+        deleteCompactedFiles(day, indexFile, writer.segmentNames);
+        deleteEmptyDirectories(day);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("ArchiveCompactor compact - {} : {} files in {} segments", day, writer.count, writer.segments.size());
+        }
+        return writer.count;
+    }
+
+    private static Path getSegment(Path segmentTmp) {
+        final String name = segmentTmp.getFileName().toString();
+        return segmentTmp.resolveSibling(name.substring(0, name.length() - TMP_SUFFIX.length()));
+    }
+
+    static String getName(Path day, Path file) {
+        final Path relative = day.relativize(file);
+        if (relative.getNameCount() == 1) {
+            return relative.toString();
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (Path part : relative) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    private static int nextSegmentNumber(Path segmentsDirectory) throws IOException {
+        int next = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(segmentsDirectory, "*" + ArchiveIndex.SEGMENT_SUFFIX + "*")) {
+            for (Path segment : stream) {
+                final String name = segment.getFileName().toString();
+                try {
+                    next = Math.max(next, Integer.parseInt(name.substring(0, name.indexOf('.'))) + 1);
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        return next;
+    }
+
+    private static Set<String> readSegmentNames(Path indexFile) throws IOException {
+        final Set<String> names = new HashSet<>();
+        if (!Files.exists(indexFile)) {
+            return names;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String segmentName = ArchiveIndex.getSegmentName(line);
+                if (segmentName != null) {
+                    names.add(segmentName);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static void deleteCompactedFiles(Path day, Path indexFile, Set<String> segmentNames) throws IOException {
+        // the index is read again instead of keeping the paths of the compacted files
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (segmentNames.contains(ArchiveIndex.getSegmentName(line))) {
+                    Files.deleteIfExists(day.resolve(ArchiveIndex.unescape(ArchiveIndex.getKey(line))));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort the entries by runs and merge them with the index, an entry replaces the entry of the same name in the index.
+     * @param entries
+     * @param indexFile
+     * @param target
+     * @throws IOException
+     */
+    private void sort(Path entries, Path indexFile, Path target) throws IOException {
+        final List<Path> runs = new ArrayList<>();
+        try {
+            try (BufferedReader reader = Files.newBufferedReader(entries, StandardCharsets.UTF_8)) {
+                final List<String> lines = new ArrayList<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                    if (lines.size() >= runSize) {
+                        runs.add(writeRun(entries, runs.size(), lines));
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    runs.add(writeRun(entries, runs.size(), lines));
+                }
+            }
+            final List<Path> sorted = new ArrayList<>(runs);
+            if (Files.exists(indexFile)) {
+                sorted.add(indexFile);
+            }
+            merge(sorted, target);
+        } finally {
+            for (Path run : runs) {
+                deleteQuietly(run);
+            }
+        }
+    }
+
+    private static Path writeRun(Path entries, int number, List<String> lines) throws IOException {
+        lines.sort(Comparator.comparing(ArchiveIndex::getKey));
+        final Path run = entries.resolveSibling(ENTRIES_FILENAME + number + TMP_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        lines.clear();
+        return run;
+    }
+
+    private static void merge(List<Path> files, Path target) throws IOException {
+        final List<BufferedReader> readers = new ArrayList<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            final PriorityQueue<Head> heads = new PriorityQueue<>();
+            for (Path file : files) {
+                final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                readers.add(reader);
+                Head.add(heads, reader.readLine(), readers.size() - 1);
+            }
+            String last = null;
+            while (!heads.isEmpty()) {
+                final Head head = heads.poll();
+                // the first file holding the name wins, the index is the last one
+                if (!head.key.equals(last)) {
+                    writer.write(head.line);
+                    writer.newLine();
+                    last = head.key;
+                }
+                Head.add(heads, readers.get(head.file).readLine(), head.file);
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // deleted by the next recovery
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("ArchiveCompactor deleteQuietly - {}", file);
+            }
+        }
+    }
+
+    private static void deleteEmptyDirectories(Path day) throws IOException {
+        Files.walkFileTree(day, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (!dir.equals(day)) {
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                        if (!stream.iterator().hasNext()) {
+                            Files.delete(dir);
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private final class SegmentWriter implements Closeable {
+
+        private final Path day;
+        private final Path segmentsDirectory;
+        private final Path entries;
+        private final List<Path> segments = new ArrayList<>();
+        private final Set<String> segmentNames = new HashSet<>();
+        private BufferedWriter index;
+        private CountingOutputStream out;
+        private ZipOutputStream zip;
+        private String segmentName;
+        private int number;
+        private long size;
+        private int count;
+
+        private SegmentWriter(Path day, Path segmentsDirectory) {
+            this.day = day;
+            this.segmentsDirectory = segmentsDirectory;
+            this.entries = segmentsDirectory.resolve(ENTRIES_FILENAME + TMP_SUFFIX);
+        }
+
+        private void add(Path file, BasicFileAttributes attrs) throws IOException {
+            if (index == null) {
+                open();
+            }
+            if (zip == null || size >= maxSegmentSize) {
+                nextSegment();
+            }
+            final String name = getName(day, file);
+            final ZipEntry entry = new ZipEntry(name);
+            entry.setLastModifiedTime(attrs.lastModifiedTime());
+            // the entry is written from its local header, the previous one being closed
+            final long offset = out.count;
+            zip.putNextEntry(entry);
+            size += Files.copy(file, zip);
+            zip.closeEntry();
+            index.append(ArchiveIndex.escape(name)).append(ArchiveIndex.SEPARATOR).append(segmentName)
+                .append(ArchiveIndex.SEPARATOR).append(String.valueOf(offset));
+            index.newLine();
+            count++;
+        }
+
+        private void open() throws IOException {
+            Files.createDirectories(segmentsDirectory);
+            index = Files.newBufferedWriter(entries, StandardCharsets.UTF_8);
+            number = nextSegmentNumber(segmentsDirectory);
+        }
+
+        private void nextSegment() throws IOException {
+            closeSegment();
+            segmentName = String.format("%03d", number++) + ArchiveIndex.SEGMENT_SUFFIX;
+            final Path segmentTmp = segmentsDirectory.resolve(segmentName + TMP_SUFFIX);
+            segments.add(segmentTmp);
+            segmentNames.add(segmentName);
+            out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(segmentTmp), 65536));
+            zip = new ZipOutputStream(out);
+            size = 0;
+        }
+
+        private void closeSegment() throws IOException {
+            if (zip != null) {
+                final ZipOutputStream closed = zip;
+                zip = null;
+                closed.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                closeSegment();
+            } finally {
+                if (index != null) {
+                    index.close();
+                }
+            }
+        }
+
+        /**
+         * Delete the entries, and the segments if the compaction is not committed.
+         * @param committed
+         */
+        private void cleanUp(boolean committed) {
+            if (!committed) {
+                for (Path segmentTmp : segments) {
+                    deleteQuietly(segmentTmp);
+                    deleteQuietly(getSegment(segmentTmp));
+                }
+            }
+            deleteQuietly(entries);
+        }
+
+    }
+
+    private static final class Head implements Comparable<Head> {
+
+        private final String line;
+        private final String key;
+        private final int file;
+
+        private Head(String line, int file) {
+            this.line = line;
+            this.key = ArchiveIndex.getKey(line);
+            this.file = file;
+        }
+
+        private static void add(PriorityQueue<Head> heads, String line, int file) {
+            if (line != null) {
+                heads.add(new Head(line, file));
+            }
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            final int compare = key.compareTo(other.key);
+            return compare != 0 ? compare : Integer.compare(file, other.file);
+        }
+
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+    }
+
+}
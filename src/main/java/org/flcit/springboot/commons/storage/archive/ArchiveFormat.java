@@ -0,0 +1,32 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+/**
+ * Format of the archives written by {@link ArchiveStreamer}.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public enum ArchiveFormat {
+
+    /** ZIP, the already compressed files are stored */
+    ZIP,
+    /** POSIX tar, with PAX headers for the long or non ASCII names and the large files */
+    TAR
+
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Index of the segments of a compacted day directory, one line {@code name<TAB>segment<TAB>offset} per archived file, sorted by name.
+ * <p>
+ * The names are escaped so they hold no tab nor line break. A file is found by a binary search in the index file, without loading it,
+ * and read from the offset of its local header in the segment, without reading the central directory of the segment.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class ArchiveIndex {
+
+    /** Directory of the segments and of the index in a day directory */
+    public static final String SEGMENTS_DIRECTORY = ".segments";
+    static final String INDEX_FILENAME = "index";
+    static final String SEGMENT_SUFFIX = ".zip";
+    static final char SEPARATOR = '\t';
+
+    /** Size in bytes of the part of the index read line by line at the end of the binary search */
+    private static final int SCAN_SIZE = 8192;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final String ESCAPED_CHARS = "\\\t\n\r";
+    private static final String ESCAPES = "\\tnr";
+
+    private ArchiveIndex() { }
+
+    /**
+     * @param day
+     * @param name the path of the file relative to the day directory, with '/' separators
+     * @return the entry of the file, null if the day has not been compacted or the file is not archived
+     * @throws IOException
+     */
+    public static Entry find(Path day, String name) throws IOException {
+        final String key = escape(name);
+        try (FileChannel channel = FileChannel.open(getIndexFile(day), StandardOpenOption.READ)) {
+            final LineReader reader = new LineReader(channel);
+            // the line of the name starts between low and high, low is the start of a line
+            long low = 0;
+            long high = channel.size();
+            while (high - low > SCAN_SIZE) {
+                final long middle = (low + high) >>> 1;
+                final long start = reader.skipLine(middle);
+                if (start >= high) {
+                    high = middle + 1;
+                    continue;
+                }
+                final String line = reader.readLine(start);
+                final int compare = getKey(line).compareTo(key);
+                if (compare == 0) {
+                    return parse(day, name, line);
+                }
+                if (compare < 0) {
+                    low = reader.next;
+                } else {
+                    high = start;
+                }
+            }
+            long position = low;
+            while (position < high) {
+                final String line = reader.readLine(position);
+                if (line == null) {
+                    break;
+                }
+                final int compare = getKey(line).compareTo(key);
+                if (compare == 0) {
+                    return parse(day, name, line);
+                }
+                if (compare > 0) {
+                    break;
+                }
+                position = reader.next;
+            }
+            return null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param day
+     * @return the number of archived files of the day directory, counted without reading their names
+     * @throws IOException
+     */
+    public static int count(Path day) throws IOException {
+        int count = 0;
+        try (InputStream in = Files.newInputStream(getIndexFile(day))) {
+            final byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        count++;
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return count;
+    }
+
+    static Path getIndexFile(Path day) {
+        return day.resolve(SEGMENTS_DIRECTORY).resolve(INDEX_FILENAME);
+    }
+
+    /**
+     * @param name
+     * @return the name with its backslashes, tabs and line breaks escaped by a backslash
+     */
+    static String escape(String name) {
+        StringBuilder sb = null;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final int index = ESCAPED_CHARS.indexOf(c);
+            if (index >= 0 && sb == null) {
+                sb = new StringBuilder(name.length() + 8).append(name, 0, i);
+            }
+            if (index >= 0) {
+                sb.append('\\').append(ESCAPES.charAt(index));
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : name;
+    }
+
+    /**
+     * @param key the escaped name
+     * @return the name
+     */
+    static String unescape(String key) {
+        if (key.indexOf('\\') < 0) {
+            return key;
+        }
+        final StringBuilder sb = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            if (c == '\\' && i < key.length() - 1) {
+                final char escaped = key.charAt(++i);
+                final int index = ESCAPES.indexOf(escaped);
+                sb.append(index >= 0 ? ESCAPED_CHARS.charAt(index) : escaped);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param line
+     * @return the escaped name of the line of the index
+     */
+    static String getKey(String line) {
+        final int index = line.indexOf(SEPARATOR);
+        return index >= 0 ? line.substring(0, index) : line;
+    }
+
+    /**
+     * @param line
+     * @return the name of the segment of the line of the index, null if the line is malformed
+     */
+    static String getSegmentName(String line) {
+        final int first = line.indexOf(SEPARATOR);
+        final int last = line.lastIndexOf(SEPARATOR);
+        return first >= 0 && last > first ? line.substring(first + 1, last) : null;
+    }
+
+    private static Entry parse(Path day, String name, String line) throws IOException {
+        final String segment = getSegmentName(line);
+        if (segment == null) {
+            throw new ZipException("Malformed archive index line: " + line);
+        }
+        try {
+            return new Entry(name, day.resolve(SEGMENTS_DIRECTORY).resolve(segment), Long.parseLong(line.substring(line.lastIndexOf(SEPARATOR) + 1)));
+        } catch (NumberFormatException e) {
+            throw new ZipException("Malformed archive index line: " + line);
+        }
+    }
+
+    /**
+     * Archived file of a segment.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final Path segment;
+        private final long offset;
+
+        private Entry(String name, Path segment, long offset) {
+            this.name = name;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Path getSegment() {
+            return segment;
+        }
+
+        /**
+         * @return the position of the local header of the file in the segment
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the content of the file read from its local header
+         * @throws IOException
+         */
+        public InputStream newInputStream() throws IOException {
+            final FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ);
+            try {
+                final ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, header, offset);
+                final int nameLength = header.getShort(26) & 0xffff;
+                final ByteBuffer headerName = ByteBuffer.allocate(nameLength);
+                readFully(channel, headerName, offset + LOCAL_HEADER_SIZE);
+                if (header.getInt(0) != LOCAL_HEADER_SIGNATURE
+                        || !Arrays.equals(headerName.array(), name.getBytes(StandardCharsets.UTF_8))) {
+                    throw new ZipException("Invalid local header of " + name + " in " + segment);
+                }
+                if ((header.getShort(8) & 0xffff) != ZipEntry.DEFLATED) {
+                    throw new ZipException("Unsupported compression method of " + name + " in " + segment);
+                }
+                channel.position(offset + LOCAL_HEADER_SIZE + nameLength + (header.getShort(28) & 0xffff));
+                final Inflater inflater = new Inflater(true);
+                return new InflaterInputStream(new BufferedInputStream(Channels.newInputStream(channel), 65536), inflater) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            inflater.end();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new ZipException("Truncated local header");
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Reader of the lines of the index at any position.
+     */
+    private static final class LineReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(512);
+        /** Position following the last line read */
+        private long next;
+
+        private LineReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @param position
+         * @return the start of the first line after the position, the size of the index if there is none
+         * @throws IOException
+         */
+        private long skipLine(long position) throws IOException {
+            long current = position;
+            while (true) {
+                buffer.clear();
+                final int read = channel.read(buffer, current);
+                if (read < 0) {
+                    return current;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return current + i + 1;
+                    }
+                }
+                current += read;
+            }
+        }
+
+        /**
+         * @param position the start of a line
+         * @return the line without its line break, null at the end of the index
+         * @throws IOException
+         */
+        private String readLine(long position) throws IOException {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long current = position;
+            while (true) {
+                buffer.clear();
+                final int read = channel.read(buffer, current);
+                if (read < 0) {
+                    next = current;
+                    return line.size() > 0 ? line.toString(StandardCharsets.UTF_8) : null;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        line.write(buffer.array(), 0, i);
+                        next = current + i + 1;
+                        return line.toString(StandardCharsets.UTF_8);
+                    }
+                }
+                line.write(buffer.array(), 0, read);
+                current += read;
+            }
+        }
+
+    }
+
+}
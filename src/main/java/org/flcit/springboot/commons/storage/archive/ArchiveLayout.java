@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code yyyy/MM/d} tree of the archiving.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class ArchiveLayout {
+
+    private ArchiveLayout() { }
+
+    /**
+     * @param root
+     * @param date
+     * @return the day directory
+     */
+    public static Path resolve(Path root, LocalDate date) {
+        final int month = date.getMonthValue();
+        return root.resolve(String.valueOf(date.getYear())).resolve(month < 10 ? "0" + month : String.valueOf(month)).resolve(String.valueOf(date.getDayOfMonth()));
+    }
+
+    /**
+     * @param root
+     * @return the existing day directories
+     * @throws IOException
+     */
+    public static List<Day> listDays(Path root) throws IOException {
+        final List<Day> days = new ArrayList<>();
+        for (Path year : listNumeric(root)) {
+            for (Path month : listNumeric(year)) {
+                for (Path day : listNumeric(month)) {
+                    try {
+                        days.add(new Day(day, LocalDate.of(number(year), number(month), number(day))));
+                    } catch (DateTimeException e) {
+                        // not a day directory
+                    }
+                }
+            }
+        }
+        return days;
+    }
+
+    /**
+     * @param directory
+     * @return the sub directories with a numeric name
+     * @throws IOException
+     */
+    public static List<Path> listNumeric(Path directory) throws IOException {
+        final List<Path> list = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, ArchiveLayout::isNumericDirectory)) {
+            stream.forEach(list::add);
+        }
+        return list;
+    }
+
+    private static boolean isNumericDirectory(Path path) {
+        final String name = path.getFileName().toString();
+        if (name.isEmpty() || name.length() > 4) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return Files.isDirectory(path);
+    }
+
+    private static int number(Path path) {
+        return Integer.parseInt(path.getFileName().toString());
+    }
+
+    /**
+     * 
+     * @since 
+     * @author Florian Lestic
+     */
+    public static final class Day {
+
+        private final Path path;
+        private final LocalDate date;
+
+        private Day(Path path, LocalDate date) {
+            this.path = path;
+            this.date = date;
+        }
+
+        /**
+         * @return
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return
+         */
+        public LocalDate getDate() {
+            return date;
+        }
+
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.flcit.springboot.commons.storage.filter.PathFilter;
+
+/**
+ * Stream the files of a directory tree as one ZIP or TAR archive, without temporary file.
+ * <p>
+ * The tree is walked lazily and the files are copied through one buffer and read once.
+ * The memory of a TAR is bounded whatever the number of files, a ZIP keeps the central directory, one record by entry,
+ * until the end of the archive.
+ * The attributes of the next entry are read in a read-ahead thread while the current one is written.
+ * The files with an already compressed extension are deflated without compression in a ZIP instead of being deflated again :
+ * unlike a STORED entry its CRC is not needed before its content, so a file modified while archived gives a valid entry.
+ * A file whose size changes while archived in a TAR fails the archive, its header being already written.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class ArchiveStreamer {
+
+    /**
+     * The extensions of the files already compressed
+     */
+    public static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "zst", "7z", "rar", "jar", "war",
+            "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "mov", "avi", "mkv",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp");
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final ArchiveFormat format;
+    private final Set<String> storedExtensions;
+
+    /**
+     * @param format
+     */
+    public ArchiveStreamer(ArchiveFormat format) {
+        this(format, COMPRESSED_EXTENSIONS);
+    }
+
+    /**
+     * @param format
+     * @param storedExtensions the extensions, in lower case, of the files deflated without compression in a ZIP
+     */
+    public ArchiveStreamer(ArchiveFormat format, Set<String> storedExtensions) {
+        this.format = format;
+        this.storedExtensions = storedExtensions != null ? storedExtensions : Collections.emptySet();
+    }
+
+    /**
+     * @param directory
+     * @param filter the filter of the regular files or null
+     * @param channel not closed
+     * @return the number of files archived
+     * @throws IOException
+     */
+    public long write(Path directory, PathFilter filter, WritableByteChannel channel) throws IOException {
+        return write(directory, filter, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * @param directory
+     * @param filter the filter of the regular files or null
+     * @param out not closed, the archive is finished and the stream flushed
+     * @return the number of files archived
+     * @throws IOException
+     */
+    public long write(Path directory, PathFilter filter, OutputStream out) throws IOException {
+        final ExecutorService readAhead = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "ArchiveStreamer-readahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long count = 0;
+        try (Stream<Path> files = Files.walk(directory)) {
+            final Iterator<Path> iterator = files.iterator();
+            final ZipOutputStream zip = format == ArchiveFormat.ZIP ? new ZipOutputStream(buffered) : null;
+            final TarWriter tar = format == ArchiveFormat.TAR ? new TarWriter(buffered, buffer) : null;
+            CompletableFuture<Entry> next = prepareNext(directory, filter, iterator, readAhead);
+            while (next != null) {
+                final Entry entry = join(next);
+                next = prepareNext(directory, filter, iterator, readAhead);
+                final InputStream in = entry != null ? open(entry.file) : null;
+                if (in == null) {
+                    continue;
+                }
+                try (in) {
+                    if (zip != null) {
+                        writeZipEntry(zip, entry, in, buffer);
+                    } else {
+                        tar.write(entry.name, entry.attrs, in);
+                    }
+                }
+                count++;
+            }
+            if (zip != null) {
+                zip.finish();
+            } else {
+                tar.finish();
+            }
+            buffered.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            readAhead.shutdownNow();
+        }
+        return count;
+    }
+
+    private CompletableFuture<Entry> prepareNext(Path directory, PathFilter filter, Iterator<Path> iterator, ExecutorService readAhead) {
+        while (iterator.hasNext()) {
+            final Path file = iterator.next();
+            if (!file.equals(directory)) {
+                return CompletableFuture.supplyAsync(() -> prepare(directory, filter, file), readAhead);
+            }
+        }
+        return null;
+    }
+
+    private Entry prepare(Path directory, PathFilter filter, Path file) {
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attrs.isRegularFile() || (filter != null && !filter.accept(file, attrs))) {
+                return null;
+            }
+            final String name = ArchiveCompactor.getName(directory, file);
+            return new Entry(file, name, attrs, format == ArchiveFormat.ZIP && isCompressed(name));
+        } catch (NoSuchFileException e) {
+            // removed since the walk
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        try {
+            return Files.newInputStream(file);
+        } catch (NoSuchFileException e) {
+            // removed since its preparation, the entry is not started
+            return null;
+        }
+    }
+
+    private boolean isCompressed(String name) {
+        final int dot = name.lastIndexOf('.');
+        return dot > name.lastIndexOf('/') && storedExtensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static void writeZipEntry(ZipOutputStream zip, Entry entry, InputStream in, byte[] buffer) throws IOException {
+        final ZipEntry zipEntry = new ZipEntry(entry.name);
+        zipEntry.setLastModifiedTime(entry.attrs.lastModifiedTime());
+        // the level applies from the next entry, its size and CRC follow the content
+        zip.setLevel(entry.compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        zip.putNextEntry(zipEntry);
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            zip.write(buffer, 0, read);
+        }
+        zip.closeEntry();
+    }
+
+    private static Entry join(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Path file;
+        private final String name;
+        private final BasicFileAttributes attrs;
+        private final boolean compressed;
+
+        private Entry(Path file, String name, BasicFileAttributes attrs, boolean compressed) {
+            this.file = file;
+            this.name = name;
+            this.attrs = attrs;
+            this.compressed = compressed;
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Writer of a POSIX tar stream, an entry whose name or size does not fit the ustar header is preceded by a PAX extended header.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+class TarWriter {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final long MAX_SIZE = 077777777777L;
+    private static final String PAX_DIRECTORY = "PaxHeaders/";
+
+    private final OutputStream out;
+    private final byte[] buffer;
+
+    TarWriter(OutputStream out, byte[] buffer) {
+        this.out = out;
+        this.buffer = buffer;
+    }
+
+    void write(String name, BasicFileAttributes attrs, InputStream in) throws IOException {
+        final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        final boolean ascii = encoded.length == name.length();
+        final long size = attrs.size();
+        final long mtime = attrs.lastModifiedTime().toMillis() / 1000;
+        String headerName = name;
+        if (encoded.length > NAME_LENGTH || !ascii || size > MAX_SIZE) {
+            final StringBuilder records = new StringBuilder();
+            if (encoded.length > NAME_LENGTH || !ascii) {
+                appendRecord(records, "path", name);
+                headerName = truncate(name);
+            }
+            if (size > MAX_SIZE) {
+                appendRecord(records, "size", Long.toString(size));
+            }
+            final byte[] pax = records.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(header(truncate(PAX_DIRECTORY + headerName), pax.length, mtime, 'x'));
+            out.write(pax);
+            pad(pax.length);
+        }
+        out.write(header(headerName, size > MAX_SIZE ? 0 : size, mtime, '0'));
+        long remaining = size;
+        while (remaining > 0) {
+            final int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("File truncated while archived: " + name);
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        if (in.read() >= 0) {
+            // the header holds the size read before the content
+            throw new IOException("File grown while archived: " + name);
+        }
+        pad(size);
+    }
+
+    void finish() throws IOException {
+        out.write(new byte[BLOCK_SIZE * 2]);
+    }
+
+    private void pad(long size) throws IOException {
+        final int padding = (int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+        if (padding > 0) {
+            out.write(new byte[padding]);
+        }
+    }
+
+    private static byte[] header(String name, long size, long mtime, char type) {
+        final byte[] header = new byte[BLOCK_SIZE];
+        put(header, 0, NAME_LENGTH, name.getBytes(StandardCharsets.UTF_8));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, Math.max(0, mtime));
+        header[156] = (byte) type;
+        put(header, 257, 6, "ustar\0".getBytes(StandardCharsets.US_ASCII));
+        put(header, 263, 2, "00".getBytes(StandardCharsets.US_ASCII));
+        // the checksum is computed with its own field filled with spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private static void put(byte[] header, int offset, int length, byte[] value) {
+        System.arraycopy(value, 0, header, offset, Math.min(length, value.length));
+    }
+
+    private static void octal(byte[] header, int offset, int length, long value) {
+        final String digits = Long.toOctalString(value);
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = digits.length(); i < length - 1; i++) {
+            sb.append('0');
+        }
+        sb.append(digits);
+        put(header, offset, length - 1, sb.toString().getBytes(StandardCharsets.US_ASCII));
+        header[offset + length - 1] = 0;
+    }
+
+    private static void appendRecord(StringBuilder records, String key, String value) {
+        // "<length> <key>=<value>\n", the length counts its own digits
+        final int base = key.length() + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int length = base + Integer.toString(base).length();
+        if (Integer.toString(length).length() != Integer.toString(base).length()) {
+            length = base + Integer.toString(length).length();
+        }
+        records.append(length).append(' ').append(key).append('=').append(value).append('\n');
+    }
+
+    private static String truncate(String name) {
+        final StringBuilder sb = new StringBuilder(NAME_LENGTH);
+        for (int i = 0; i < name.length() && sb.length() < NAME_LENGTH; i++) {
+            final char c = name.charAt(i);
+            sb.append(c < 0x80 ? c : '_');
+        }
+        return sb.toString();
+    }
+
+}
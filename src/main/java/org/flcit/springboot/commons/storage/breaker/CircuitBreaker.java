@@ -0,0 +1,188 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.breaker;
+
+/**
+ * Circuit breaker over a sliding window of the last calls.
+ * <p>
+ * The circuit opens when the failure rate of the window reaches the threshold, then rejects the calls during the open duration.
+ * After it, a limited number of probe calls are permitted : the circuit closes when they all succeed and opens again on a failure.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class CircuitBreaker {
+
+    /**
+     * State of the circuit.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDuration;
+    private final int halfOpenProbes;
+    private State state = State.CLOSED;
+    private int position;
+    private int calls;
+    private int failures;
+    private long openedTime;
+    private int probes;
+    private int probeSuccesses;
+
+    /**
+     * @param windowSize the number of calls of the sliding window
+     * @param minimumCalls the number of calls in the window before the failure rate is evaluated
+     * @param failureRateThreshold the failure rate opening the circuit, between 0 and 1
+     * @param openDuration the duration in milliseconds before the probe calls
+     * @param halfOpenProbes the number of probe calls closing the circuit
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openDuration, int halfOpenProbes) {
+        if (windowSize < 1 || halfOpenProbes < 1 || failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Invalid circuit breaker configuration");
+        }
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(Math.max(1, minimumCalls), windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * @return false while the circuit is open, does not take a probe call
+     */
+    public synchronized boolean isCallPermitted() {
+        final State current = getState();
+        return current == State.CLOSED || current == State.HALF_OPEN && probes < halfOpenProbes;
+    }
+
+    /**
+     * Take a call, the result of a permitted call must be given to {@link #onSuccess()} or {@link #onFailure()}.
+     * @return true if the call is permitted
+     */
+    public synchronized boolean tryAcquire() {
+        return acquire() != null;
+    }
+
+    /**
+     * Take a call, the result of a permitted call must be given to {@link #onSuccess()} or {@link #onFailure()}.
+     * A call permitted by a closed circuit is not counted, it may be checked again before being made.
+     * @return the state permitting the call, HALF_OPEN for a probe call, null if the call is rejected
+     */
+    public synchronized State acquire() {
+        switch (getState()) {
+        case CLOSED:
+            return State.CLOSED;
+        case HALF_OPEN:
+            if (probes < halfOpenProbes) {
+                probes++;
+                return State.HALF_OPEN;
+            }
+            return null;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Give back a permitted call which has not been made.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probes > 0) {
+            probes--;
+        }
+    }
+
+    /**
+     * Record a successful call, the circuit closes once all the probe calls succeed.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probeSuccesses >= halfOpenProbes) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * Record a failed call, the circuit opens on a failed probe call or once the failure rate of the window reaches the threshold.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * @return the state, an open circuit is half open once the open duration is elapsed
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedTime >= openDuration) {
+            state = State.HALF_OPEN;
+            probes = 0;
+            probeSuccesses = 0;
+        }
+        return state;
+    }
+
+    /**
+     * @return the failure rate of the window
+     */
+    public synchronized double getFailureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    private void record(boolean failure) {
+        if (calls == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedTime = System.currentTimeMillis();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        calls = 0;
+        failures = 0;
+    }
+
+}
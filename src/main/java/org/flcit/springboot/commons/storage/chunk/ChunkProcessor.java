@@ -0,0 +1,39 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 
+ * @param <R> the type of the result of a chunk
+ * @since 
+ * @author Florian Lestic
+ */
+@FunctionalInterface
+public interface ChunkProcessor<R> {
+
+    /**
+     * @param chunk the read only records of the chunk, from its position to its limit
+     * @param offset the position of the chunk in the file
+     * @return
+     * @throws IOException
+     */
+    R process(ByteBuffer chunk, long offset) throws IOException;
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.chunk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Process a large file by chunks in parallel.
+ * <p>
+ * The file is split in ranges of about the chunk size whose bounds are aligned on the records by a {@link RecordDelimiter},
+ * each range is mapped in memory and given to the {@link ChunkProcessor} in a {@link ForkJoinPool},
+ * the results are returned in the order of the ranges in the file.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class ChunkedFileProcessor {
+
+    /** A mapping is limited to 2 GB */
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private final RecordDelimiter delimiter;
+
+    /**
+     * @param pool the pool processing the chunks, the common pool if null
+     * @param chunkSize the size in bytes of the chunks before their alignment on the records
+     * @param delimiter
+     */
+    public ChunkedFileProcessor(ForkJoinPool pool, long chunkSize, RecordDelimiter delimiter) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        this.pool = pool != null ? pool : ForkJoinPool.commonPool();
+        this.chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @param <R>
+     * @param file
+     * @param processor
+     * @return the results of the chunks in the order of the file
+     * @throws IOException
+     */
+    public <R> List<R> process(Path file, ChunkProcessor<R> processor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final List<long[]> ranges = split(channel);
+            if (ranges.isEmpty()) {
+                return Collections.emptyList();
+            }
+            final List<ChunkTask<R>> tasks = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                tasks.add(new ChunkTask<>(channel, range[0], range[1], processor));
+            }
+            try {
+                return pool.invoke(new RecursiveTask<List<R>>() {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected List<R> compute() {
+                        ForkJoinTask.invokeAll(tasks);
+                        final List<R> results = new ArrayList<>(tasks.size());
+                        for (ChunkTask<R> task : tasks) {
+                            results.add(task.join());
+                        }
+                        return results;
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * @param <R>
+     * @param file
+     * @param processor
+     * @param merger the merge of the results of two consecutive chunks
+     * @return the merged result or null for an empty file
+     * @throws IOException
+     */
+    public <R> R process(Path file, ChunkProcessor<R> processor, BinaryOperator<R> merger) throws IOException {
+        R result = null;
+        for (R chunk : process(file, processor)) {
+            result = result == null ? chunk : merger.apply(result, chunk);
+        }
+        return result;
+    }
+
+    private List<long[]> split(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        final List<long[]> ranges = new ArrayList<>((int) Math.min(1024, size / chunkSize + 1));
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            if (end < size) {
+                end = delimiter.align(channel, end, size);
+            }
+            if (end - start > MAX_CHUNK_SIZE) {
+                throw new IOException(String.format("The record at %d is larger than %d bytes", start, MAX_CHUNK_SIZE));
+            }
+            ranges.add(new long[] { start, end });
+            start = end;
+        }
+        return ranges;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ChunkTask<R> extends RecursiveTask<R> {
+
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+        private final transient ChunkProcessor<R> processor;
+
+        private ChunkTask(FileChannel channel, long start, long end, ChunkProcessor<R> processor) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.processor = processor;
+        }
+
+        @Override
+        protected R compute() {
+            try {
+                final MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                return processor.process(chunk, start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
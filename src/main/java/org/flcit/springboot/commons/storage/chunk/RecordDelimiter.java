@@ -0,0 +1,85 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Alignment of the bounds of the chunks on the records of a file.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@FunctionalInterface
+public interface RecordDelimiter {
+
+    /**
+     * @param channel
+     * @param position the tentative end of a chunk
+     * @param size the size of the file
+     * @return the first start of a record at or after the position, or the size
+     * @throws IOException
+     */
+    long align(FileChannel channel, long position, long size) throws IOException;
+
+    /**
+     * @return the delimiter of the records ended by a line feed
+     */
+    static RecordDelimiter newLine() {
+        return of((byte) '\n');
+    }
+
+    /**
+     * @param delimiter the last byte of each record
+     * @return
+     */
+    static RecordDelimiter of(byte delimiter) {
+        return (channel, position, size) -> {
+            final ByteBuffer buffer = ByteBuffer.allocate(8192);
+            // the record starts after the delimiter preceding it
+            long offset = Math.max(0, position - 1);
+            while (offset < size) {
+                buffer.clear();
+                final int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == delimiter) {
+                        return Math.max(position, offset + i + 1);
+                    }
+                }
+                offset += read;
+            }
+            return size;
+        };
+    }
+
+    /**
+     * @param length the length in bytes of each record
+     * @return
+     */
+    static RecordDelimiter fixedLength(int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("length must be greater than 0");
+        }
+        return (channel, position, size) -> Math.min(size, (position + length - 1) / length * length);
+    }
+
+}
@@ -43,6 +43,7 @@ public class StorageProperties implements InitializingBean {
     private String location;
     private String[] initFolders;
     private Class<Enum<?>> initFoldersWithEnum;
+    private UsageProperties usage = new UsageProperties();
 
     /**
      * @return
@@ -72,6 +73,20 @@ public class StorageProperties implements InitializingBean {
         this.initFoldersWithEnum = initFoldersWithEnum;
     }
 
+    /**
+     * @return the usage accounting, see {@link org.flcit.springboot.commons.storage.usage.StorageUsage}
+     */
+    public UsageProperties getUsage() {
+        return usage;
+    }
+
+    /**
+     * @param usage
+     */
+    public void setUsage(UsageProperties usage) {
+        this.usage = usage;
+    }
+
     private String[] getFoldersToInit() {
         if (initFoldersWithEnum != null) {
             return StringUtils.concatenateStringArrays(initFolders, EnumUtils.toStringArray(EnumUtils.values(initFoldersWithEnum)));
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.StringUtils;
+
+import org.flcit.springboot.commons.storage.task.PropertiesFilesBackgroundTask;
+
+/**
+ * Register a {@link PropertiesFilesBackgroundTask} and its executor for each task of the properties <code>storage.tasks</code>.
+ * <p>
+ * For the task <code>inbox</code> the beans are <code>inboxTask</code> and <code>inboxTaskExecutor</code>,
+ * the executor is sized by <code>storage.tasks.inbox.concurrency</code>.
+ * The tasks are bound here only, before the beans are created, and are not part of {@link StorageProperties}.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class TaskDefinitionsRegistrar implements BeanDefinitionRegistryPostProcessor, EnvironmentAware {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaskDefinitionsRegistrar.class);
+    private static final String PREFIX = "storage.tasks";
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
+        final Binder binder = Binder.get(environment);
+        final Map<String, TaskProperties> tasks = binder.bind(PREFIX, Bindable.mapOf(String.class, TaskProperties.class)).orElse(null);
+        if (tasks == null) {
+            return;
+        }
+        final Path location = binder.bind("storage.location", String.class).map(Paths::get).orElse(null);
+        for (Map.Entry<String, TaskProperties> task : tasks.entrySet()) {
+            if (task.getValue().isEnabled()) {
+                register(registry, task.getKey(), task.getValue(), location);
+            } else if (LOG.isInfoEnabled()) {
+                LOG.info("TaskDefinitionsRegistrar postProcessBeanDefinitionRegistry - {} disabled", task.getKey());
+            }
+        }
+    }
+
+    private static void register(BeanDefinitionRegistry registry, String name, TaskProperties properties, Path location) {
+        if (!StringUtils.hasText(properties.getPath()) || !StringUtils.hasText(properties.getProcessor())) {
+            throw new IllegalStateException(String.format("The properties %s.%s.path and %s.%s.processor are required", PREFIX, name, PREFIX, name));
+        }
+        final String executorName = name + "TaskExecutor";
+        registry.registerBeanDefinition(executorName, getExecutorDefinition(name, properties));
+        registry.registerBeanDefinition(name + "Task", BeanDefinitionBuilder.genericBeanDefinition(PropertiesFilesBackgroundTask.class)
+                .addConstructorArgValue(name)
+                .addConstructorArgValue(properties)
+                .addConstructorArgValue(location)
+                .addConstructorArgReference(executorName)
+                .addConstructorArgReference(properties.getProcessor())
+                .getBeanDefinition());
+    }
+
+    private static BeanDefinition getExecutorDefinition(String name, TaskProperties properties) {
+        final int concurrency = Math.max(1, properties.getConcurrency());
+        if (properties.getExecutor() == TaskProperties.ExecutorType.SCHEDULER) {
+            return BeanDefinitionBuilder.genericBeanDefinition(ThreadPoolTaskScheduler.class)
+                    .addPropertyValue("poolSize", concurrency)
+                    .addPropertyValue("threadNamePrefix", name + "-")
+                    .addPropertyValue("acceptTasksAfterContextClose", true)
+                    .getBeanDefinition();
+        }
+        return BeanDefinitionBuilder.genericBeanDefinition(ThreadPoolTaskExecutor.class)
+                .addPropertyValue("corePoolSize", concurrency)
+                .addPropertyValue("maxPoolSize", concurrency)
+                .addPropertyValue("queueCapacity", properties.getQueueCapacity())
+                .addPropertyValue("threadNamePrefix", name + "-")
+                .addPropertyValue("acceptTasksAfterContextClose", true)
+                .getBeanDefinition();
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        // the beans are registered by postProcessBeanDefinitionRegistry
+    }
+
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Properties of a task declared under <code>storage.tasks.&lt;name&gt;</code>, the relative paths are resolved from <code>storage.location</code>.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class TaskProperties {
+
+    /**
+     * Type of the executor of a task.
+     */
+    public enum ExecutorType {
+        /** A thread pool with a queue */
+        POOL,
+        /** A scheduler, the retries on exception are delayed */
+        SCHEDULER
+    }
+
+    private boolean enabled = true;
+    private String path;
+    private String processor;
+    private String[] suffixes;
+    private String glob;
+    private String regex;
+    private int depth = 1;
+    private long stableDelay;
+    private long maxScanDelay = 30000;
+    private ExecutorType executor = ExecutorType.POOL;
+    private int concurrency = 1;
+    private int queueCapacity = Integer.MAX_VALUE;
+    private String completedDirectory;
+    private boolean archive = true;
+    private boolean deleteOnCompleted;
+    private boolean checkFileExistsOnCompleted;
+    private String exceptionDirectory;
+    private boolean deleteOnException;
+    private String doublonDirectory;
+    private String rateLimiter;
+    private long drainTimeout = 20000;
+    private String claimsFile;
+
+    /**
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @param path the directory scanned by the task
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return
+     */
+    public String getProcessor() {
+        return processor;
+    }
+
+    /**
+     * @param processor the name of the {@link org.flcit.springboot.commons.storage.task.FileProcessor} bean
+     */
+    public void setProcessor(String processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * @return
+     */
+    public String[] getSuffixes() {
+        return suffixes;
+    }
+
+    /**
+     * @param suffixes the accepted suffixes of the file names, case is ignored
+     */
+    public void setSuffixes(String[] suffixes) {
+        this.suffixes = suffixes;
+    }
+
+    /**
+     * @return
+     */
+    public String getGlob() {
+        return glob;
+    }
+
+    /**
+     * @param glob the glob pattern of the accepted file names
+     */
+    public void setGlob(String glob) {
+        this.glob = glob;
+    }
+
+    /**
+     * @return
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * @param regex the regular expression of the accepted file names
+     */
+    public void setRegex(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * @return
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param depth the max depth of the scan
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @return
+     */
+    public long getStableDelay() {
+        return stableDelay;
+    }
+
+    /**
+     * @param stableDelay the delay in milliseconds since the last modification before a file is processed
+     */
+    public void setStableDelay(long stableDelay) {
+        this.stableDelay = stableDelay;
+    }
+
+    /**
+     * @return
+     */
+    public long getMaxScanDelay() {
+        return maxScanDelay;
+    }
+
+    /**
+     * @param maxScanDelay the maximum delay in milliseconds between two scans of an idle directory, 30000 by default
+     */
+    public void setMaxScanDelay(long maxScanDelay) {
+        this.maxScanDelay = maxScanDelay;
+    }
+
+    /**
+     * @return
+     */
+    public ExecutorType getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor
+     */
+    public void setExecutor(ExecutorType executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency the number of threads of the executor
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @return
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @param queueCapacity the capacity of the queue of a {@link ExecutorType#POOL} executor
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return
+     */
+    public String getCompletedDirectory() {
+        return completedDirectory;
+    }
+
+    /**
+     * @param completedDirectory
+     */
+    public void setCompletedDirectory(String completedDirectory) {
+        this.completedDirectory = completedDirectory;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isArchive() {
+        return archive;
+    }
+
+    /**
+     * @param archive true to move the completed files in dated sub directories
+     */
+    public void setArchive(boolean archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isDeleteOnCompleted() {
+        return deleteOnCompleted;
+    }
+
+    /**
+     * @param deleteOnCompleted
+     */
+    public void setDeleteOnCompleted(boolean deleteOnCompleted) {
+        this.deleteOnCompleted = deleteOnCompleted;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isCheckFileExistsOnCompleted() {
+        return checkFileExistsOnCompleted;
+    }
+
+    /**
+     * @param checkFileExistsOnCompleted true to move a completed file only if it still exists, the processor may have moved it
+     */
+    public void setCheckFileExistsOnCompleted(boolean checkFileExistsOnCompleted) {
+        this.checkFileExistsOnCompleted = checkFileExistsOnCompleted;
+    }
+
+    /**
+     * @return
+     */
+    public String getExceptionDirectory() {
+        return exceptionDirectory;
+    }
+
+    /**
+     * @param exceptionDirectory
+     */
+    public void setExceptionDirectory(String exceptionDirectory) {
+        this.exceptionDirectory = exceptionDirectory;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isDeleteOnException() {
+        return deleteOnException;
+    }
+
+    /**
+     * @param deleteOnException
+     */
+    public void setDeleteOnException(boolean deleteOnException) {
+        this.deleteOnException = deleteOnException;
+    }
+
+    /**
+     * @return
+     */
+    public String getDoublonDirectory() {
+        return doublonDirectory;
+    }
+
+    /**
+     * @param doublonDirectory
+     */
+    public void setDoublonDirectory(String doublonDirectory) {
+        this.doublonDirectory = doublonDirectory;
+    }
+
+    /**
+     * @return
+     */
+    public String getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @param rateLimiter the name of the shared {@link org.flcit.springboot.commons.storage.ratelimit.TokenBucketRateLimiter} bean
+     */
+    public void setRateLimiter(String rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * @return
+     */
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * @param drainTimeout the maximum time in milliseconds to wait for the files in progress at the stop
+     */
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * @return
+     */
+    public String getClaimsFile() {
+        return claimsFile;
+    }
+
+    /**
+     * @param claimsFile the file where the files not started at the stop are saved for the next start
+     */
+    public void setClaimsFile(String claimsFile) {
+        this.claimsFile = claimsFile;
+    }
+
+    /**
+     * @param location the root of the relative paths
+     * @param value
+     * @return the path or null
+     */
+    public static Path resolve(Path location, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        final Path path = Paths.get(value);
+        return location == null || path.isAbsolute() ? path : location.resolve(path);
+    }
+
+}
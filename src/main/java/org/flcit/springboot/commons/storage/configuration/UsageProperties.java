@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Properties of the usage accounting under <code>storage.usage</code>, the directories are relative to <code>storage.location</code>.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class UsageProperties {
+
+    private boolean enabled;
+    private String[] directories;
+    private Map<String, DataSize> quotas = new LinkedHashMap<>();
+    private long reconcileInterval = 86400000;
+
+    /**
+     * @return
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return
+     */
+    public String[] getDirectories() {
+        return directories;
+    }
+
+    /**
+     * @param directories the directories tracked in addition to the root
+     */
+    public void setDirectories(String[] directories) {
+        this.directories = directories;
+    }
+
+    /**
+     * @return
+     */
+    public Map<String, DataSize> getQuotas() {
+        return quotas;
+    }
+
+    /**
+     * @param quotas the maximum size by directory, checked at the copy, the directories are tracked
+     */
+    public void setQuotas(Map<String, DataSize> quotas) {
+        this.quotas = quotas;
+    }
+
+    /**
+     * @return
+     */
+    public long getReconcileInterval() {
+        return reconcileInterval;
+    }
+
+    /**
+     * @param reconcileInterval the delay in milliseconds between two walks of the tracked directories, 0 to only walk them at the start
+     */
+    public void setReconcileInterval(long reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+    }
+
+}
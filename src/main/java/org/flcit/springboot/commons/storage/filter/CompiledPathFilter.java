@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.filter;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conjunction of {@link PathFilter} evaluated in order.
+ * <p>
+ * As a {@link FileFilter} it can be given to the existing constructors of the background tasks,
+ * which then use the {@link PathFilter} with the attributes read by the scan.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class CompiledPathFilter implements PathFilter, FileFilter {
+
+    private final PathFilter[] filters;
+
+    CompiledPathFilter(PathFilter[] filters) {
+        this.filters = filters;
+    }
+
+    List<PathFilter> getFilters() {
+        return Arrays.asList(filters);
+    }
+
+    @Override
+    public boolean accept(Path file, BasicFileAttributes attrs) {
+        for (PathFilter filter : filters) {
+            if (!filter.accept(file, attrs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean accept(File pathname) {
+        final Path file = pathname.toPath();
+        try {
+            return accept(file, Files.readAttributes(file, BasicFileAttributes.class));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
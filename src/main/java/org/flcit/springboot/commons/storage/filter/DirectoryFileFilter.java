@@ -18,6 +18,9 @@ package org.flcit.springboot.commons.storage.filter;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import org.flcit.commons.core.file.util.FileUtils;
 
@@ -27,7 +30,7 @@ import org.flcit.commons.core.file.util.FileUtils;
  * @author Florian Lestic
  */
 @SuppressWarnings("java:S6548")
-public class DirectoryFileFilter implements FileFilter {
+public final class DirectoryFileFilter implements FileFilter, PathFilter {
 
     private static DirectoryFileFilter instance;
 
@@ -39,6 +42,17 @@ public class DirectoryFileFilter implements FileFilter {
                 && !FileUtils.isTempFile(pathname.toPath());
     }
 
+    /**
+     * @param file
+     * @param attrs the attributes of the file, read from the file system when null
+     * @return
+     */
+    @Override
+    public boolean accept(Path file, BasicFileAttributes attrs) {
+        return (attrs != null ? attrs.isDirectory() : Files.isDirectory(file))
+                && !FileUtils.isTempFile(file);
+    }
+
     /**
      * @return
      */
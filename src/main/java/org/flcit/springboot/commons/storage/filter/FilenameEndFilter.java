@@ -18,13 +18,15 @@ package org.flcit.springboot.commons.storage.filter;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * 
  * @since 
  * @author Florian Lestic
  */
-public class FilenameEndFilter implements FilenameFilter {
+public class FilenameEndFilter implements FilenameFilter, PathFilter {
 
     private final String end;
 
@@ -32,12 +34,17 @@ public class FilenameEndFilter implements FilenameFilter {
      * @param end
      */
     public FilenameEndFilter(String end) {
-        this.end = end.toLowerCase();
+        this.end = end;
     }
 
     @Override
     public boolean accept(File dir, String name) {
-        return name.toLowerCase().endsWith(end);
+        return PathFilters.endsWithIgnoreCase(name, end);
+    }
+
+    @Override
+    public boolean accept(Path file, BasicFileAttributes attrs) {
+        return PathFilters.endsWithIgnoreCase(file.getFileName().toString(), end);
     }
 
 }
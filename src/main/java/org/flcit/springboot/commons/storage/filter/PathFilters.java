@@ -0,0 +1,237 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.filter;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flcit.commons.core.file.util.FileUtils;
+
+/**
+ * Factory of {@link PathFilter}.
+ * <p>
+ * The patterns are compiled when the filter is created, the filters only use the name of the file and its prefetched attributes.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class PathFilters {
+
+    /** Prefix of the files written by the storage service and not yet renamed, never taken by a task */
+    public static final String STAGING_PREFIX = ".staging-";
+
+    private static final PathFilter ALL = (file, attrs) -> true;
+
+    private PathFilters() { }
+
+    /**
+     * @return
+     */
+    public static PathFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @return
+     */
+    public static PathFilter directories() {
+        return (file, attrs) -> attrs.isDirectory();
+    }
+
+    /**
+     * @return
+     */
+    public static PathFilter regularFiles() {
+        return (file, attrs) -> attrs.isRegularFile();
+    }
+
+    /**
+     * @return
+     */
+    public static PathFilter notTemp() {
+        return (file, attrs) -> !FileUtils.isTempFile(file);
+    }
+
+    /**
+     * @param file
+     * @return true if the file is being written by the storage service
+     */
+    public static boolean isStaging(Path file) {
+        final Path name = file.getFileName();
+        return name != null && name.toString().startsWith(STAGING_PREFIX);
+    }
+
+    /**
+     * @param glob the glob pattern matched against the file name
+     * @return
+     */
+    public static PathFilter glob(String glob) {
+        return matcher("glob:" + glob);
+    }
+
+    /**
+     * @param regex the regular expression matched against the file name
+     * @return
+     */
+    public static PathFilter regex(String regex) {
+        return matcher("regex:" + regex);
+    }
+
+    private static PathFilter matcher(String syntaxAndPattern) {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
+        return (file, attrs) -> matcher.matches(file.getFileName());
+    }
+
+    /**
+     * @param directory
+     * @return the filter of the entries under the directory
+     */
+    public static PathFilter under(Path directory) {
+        return (file, attrs) -> file.startsWith(directory);
+    }
+
+    /**
+     * @param suffixes the suffixes of the file name, case is ignored
+     * @return
+     */
+    public static PathFilter suffixes(String... suffixes) {
+        final String[] ends = suffixes.clone();
+        return (file, attrs) -> endsWithIgnoreCase(file.getFileName().toString(), ends);
+    }
+
+    static boolean endsWithIgnoreCase(String name, String... ends) {
+        for (String end : ends) {
+            if (name.regionMatches(true, name.length() - end.length(), end, 0, end.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param min the minimum size in bytes, inclusive
+     * @param max the maximum size in bytes, inclusive, or a negative value for no maximum
+     * @return
+     */
+    public static PathFilter size(long min, long max) {
+        return (file, attrs) -> attrs.size() >= min && (max < 0 || attrs.size() <= max);
+    }
+
+    /**
+     * @param min the minimum age in milliseconds of the last modification, inclusive
+     * @param max the maximum age in milliseconds of the last modification, inclusive, or a negative value for no maximum
+     * @return
+     */
+    public static PathFilter age(long min, long max) {
+        return (file, attrs) -> {
+            final long age = System.currentTimeMillis() - attrs.lastModifiedTime().toMillis();
+            return age >= min && (max < 0 || age <= max);
+        };
+    }
+
+    /**
+     * @param filter
+     * @return
+     */
+    public static PathFilter not(PathFilter filter) {
+        return (file, attrs) -> !filter.accept(file, attrs);
+    }
+
+    /**
+     * @param filters
+     * @return
+     */
+    public static PathFilter any(PathFilter... filters) {
+        final PathFilter[] array = filters.clone();
+        return (file, attrs) -> {
+            for (PathFilter filter : array) {
+                if (filter.accept(file, attrs)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Compile the conjunction of the filters, the nested conjunctions are flattened.
+     * @param filters
+     * @return
+     */
+    public static CompiledPathFilter compile(PathFilter... filters) {
+        final List<PathFilter> list = new ArrayList<>(filters.length);
+        for (PathFilter filter : filters) {
+            if (filter instanceof CompiledPathFilter compiled) {
+                list.addAll(compiled.getFilters());
+            } else if (filter != null && filter != ALL) {
+                list.add(filter);
+            }
+        }
+        return new CompiledPathFilter(list.toArray(new PathFilter[list.size()]));
+    }
+
+    /**
+     * @param filenameFilter
+     * @return the filter itself when it is a {@link PathFilter} not overriding {@link FilenameFilter#accept(File, String)} in a subclass, an adapter otherwise
+     */
+    public static PathFilter of(FilenameFilter filenameFilter) {
+        if (filenameFilter == null) {
+            return ALL;
+        }
+        if (filenameFilter instanceof PathFilter pathFilter && !overridesLegacy(filenameFilter, File.class, String.class)) {
+            return pathFilter;
+        }
+        return (file, attrs) -> filenameFilter.accept(file.getParent().toFile(), file.getFileName().toString());
+    }
+
+    /**
+     * @param fileFilter
+     * @return the filter itself when it is a {@link PathFilter} not overriding {@link FileFilter#accept(File)} in a subclass, an adapter otherwise
+     */
+    public static PathFilter of(FileFilter fileFilter) {
+        if (fileFilter == null) {
+            return ALL;
+        }
+        if (fileFilter instanceof PathFilter pathFilter && !overridesLegacy(fileFilter, File.class)) {
+            return pathFilter;
+        }
+        return (file, attrs) -> fileFilter.accept(file.toFile());
+    }
+
+    /**
+     * @param filter
+     * @param parameterTypes the parameters of the {@code accept} method of the {@link File} based filter
+     * @return true if the {@link File} based method is overridden below the class implementing {@link PathFilter#accept(Path, BasicFileAttributes)}
+     */
+    private static boolean overridesLegacy(Object filter, Class<?>... parameterTypes) {
+        try {
+            final Class<?> legacy = filter.getClass().getMethod("accept", parameterTypes).getDeclaringClass();
+            final Class<?> path = filter.getClass().getMethod("accept", Path.class, BasicFileAttributes.class).getDeclaringClass();
+            return legacy != path && path.isAssignableFrom(legacy);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+}
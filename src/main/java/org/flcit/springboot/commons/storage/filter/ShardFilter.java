@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.filter;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Predicate;
+
+/**
+ * Filter of the files of one shard among several instances scanning the same directory.
+ * <p>
+ * The shard of a file is chosen by rendezvous hashing of its name : each shard gets a score and the highest score wins.
+ * When a shard is added, only the files won by the new shard change of instance,
+ * when the last shard is removed only its files are spread over the others.
+ * Only the name is used so the filter can be applied before the attributes of the file are read.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class ShardFilter implements PathFilter, Predicate<Path> {
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final int index;
+    private final int count;
+
+    /**
+     * @param index the shard of this instance, from 0 to count - 1
+     * @param count the number of shards
+     */
+    public ShardFilter(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException(String.format("Invalid shard %d of %d", index, count));
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * @param name
+     * @param count
+     * @return the shard of the name
+     */
+    public static int shard(String name, int count) {
+        final long hash = name.hashCode() * GOLDEN_RATIO;
+        int shard = 0;
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            final long score = mix(hash + i * GOLDEN_RATIO + i);
+            if (score > best) {
+                best = score;
+                shard = i;
+            }
+        }
+        return shard;
+    }
+
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public boolean test(Path file) {
+        return count == 1 || shard(file.getFileName().toString(), count) == index;
+    }
+
+    @Override
+    public boolean accept(Path file, BasicFileAttributes attrs) {
+        return test(file);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+}
@@ -18,16 +18,19 @@ package org.flcit.springboot.commons.storage.filter.predicate;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.function.Predicate;
 
 import org.flcit.commons.core.file.util.FileUtils;
+import org.flcit.springboot.commons.storage.filter.DirectoryFileFilter;
+import org.flcit.springboot.commons.storage.filter.PathFilter;
 
 /**
  * @param <T>
  * @since 
  * @author Florian Lestic
  */
-public class DirectoryPredicate<T extends Path> implements Predicate<T> {
+public class DirectoryPredicate<T extends Path> implements Predicate<T>, PathFilter {
 
     private static Predicate<Path> instance;
 
@@ -39,6 +42,11 @@ public class DirectoryPredicate<T extends Path> implements Predicate<T> {
                 && !FileUtils.isTempFile(t);
     }
 
+    @Override
+    public boolean accept(Path file, BasicFileAttributes attrs) {
+        return DirectoryFileFilter.getInstance().accept(file, attrs);
+    }
+
     /**
      * @return
      */
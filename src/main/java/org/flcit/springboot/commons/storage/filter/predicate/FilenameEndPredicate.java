@@ -17,14 +17,17 @@
 package org.flcit.springboot.commons.storage.filter.predicate;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.function.Predicate;
 
+import org.flcit.springboot.commons.storage.filter.PathFilter;
+
 /**
  * @param <T>
  * @since 
  * @author Florian Lestic
  */
-public class FilenameEndPredicate<T extends Path> implements Predicate<T> {
+public class FilenameEndPredicate<T extends Path> implements Predicate<T>, PathFilter {
 
     private final String end;
 
@@ -40,4 +43,9 @@ public class FilenameEndPredicate<T extends Path> implements Predicate<T> {
         return t.getFileName().toString().endsWith(end);
     }
 
+    @Override
+    public boolean accept(Path file, BasicFileAttributes attrs) {
+        return file.getFileName().toString().endsWith(end);
+    }
+
 }
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.fingerprint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Persistent set of SHA-256 fingerprints of file contents.
+ * <p>
+ * The fingerprints are stored in an open addressing hash table mapped from a file, which is rebuilt with a doubled capacity
+ * when it is 70% full. An in-memory bloom filter answers most of the lookups of unknown fingerprints without reading the table.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class FingerprintRegistry implements Closeable {
+
+    /** Size in bytes of a fingerprint */
+    public static final int LENGTH = 32;
+    private static final int MAGIC = 0x46505231;
+    private static final int HEADER = 16;
+    private static final int BLOOM_HASHES = 7;
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BUFFER_SIZE = 65536;
+    /** The largest power of two of slots mapped in less than 2GB */
+    private static final int MAX_CAPACITY = 1 << 25;
+    private static final byte[] EMPTY = new byte[LENGTH];
+
+    private final Path file;
+    private final int expectedEntries;
+    private FileChannel channel;
+    private MappedByteBuffer table;
+    private int capacity;
+    private int size;
+    private long[] bloom;
+    private long bloomBits;
+
+    /**
+     * @param file
+     * @param expectedEntries the number of fingerprints used to size the table and the bloom filter, at most 16777216 as the table is mapped in less than 2GB
+     * @throws IOException
+     */
+    public FingerprintRegistry(Path file, int expectedEntries) throws IOException {
+        this.file = file;
+        this.expectedEntries = Math.max(1024, expectedEntries);
+        if (this.expectedEntries > MAX_CAPACITY / 2) {
+            throw new IllegalArgumentException("Too many expected entries, the maximum is " + MAX_CAPACITY / 2);
+        }
+        if (Files.exists(file) && Files.size(file) > HEADER) {
+            open(file);
+        } else {
+            create(file, Integer.highestOneBit(this.expectedEntries * 2 - 1) << 1);
+            open(file);
+        }
+        initBloom();
+    }
+
+    /**
+     * @param path
+     * @return the SHA-256 of the content of the file
+     * @throws IOException
+     */
+    public static byte[] fingerprint(Path path) throws IOException {
+        final MessageDigest digest = newDigest();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param fingerprint
+     * @return true if the fingerprint has been registered
+     */
+    public synchronized boolean contains(byte[] fingerprint) {
+        check(fingerprint);
+        return mightContain(fingerprint) && find(fingerprint) >= 0;
+    }
+
+    /**
+     * @param fingerprint
+     * @return false if the fingerprint was already registered
+     * @throws IOException
+     */
+    public synchronized boolean register(byte[] fingerprint) throws IOException {
+        check(fingerprint);
+        if (mightContain(fingerprint) && find(fingerprint) >= 0) {
+            return false;
+        }
+        if ((size + 1) * 10L > capacity * 7L) {
+            grow();
+        }
+        insert(table, capacity, fingerprint);
+        size++;
+        table.putInt(8, size);
+        addBloom(fingerprint);
+        return true;
+    }
+
+    /**
+     * @return the number of registered fingerprints
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Write the changes of the table to the storage device.
+     */
+    public synchronized void force() {
+        table.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        table.force();
+        channel.close();
+    }
+
+    private static void check(byte[] fingerprint) {
+        if (fingerprint == null || fingerprint.length != LENGTH || Arrays.equals(fingerprint, EMPTY)) {
+            throw new IllegalArgumentException("Invalid fingerprint");
+        }
+    }
+
+    private static void create(Path path, int capacity) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(capacity).putInt(0).putInt(0).flip();
+            out.write(header, 0);
+            out.truncate(HEADER + (long) capacity * LENGTH);
+            // extend the file to its full size
+            out.write(ByteBuffer.allocate(1), HEADER + (long) capacity * LENGTH - 1);
+        }
+    }
+
+    private void open(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("Not a fingerprint registry: " + path);
+        }
+        this.capacity = header.getInt();
+        this.size = header.getInt();
+        if (capacity <= 0 || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1) {
+            channel.close();
+            throw new IOException("Invalid capacity of the fingerprint registry: " + path);
+        }
+        this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * LENGTH);
+    }
+
+    private int find(byte[] fingerprint) {
+        final byte[] slot = new byte[LENGTH];
+        int index = index(fingerprint, capacity);
+        for (int i = 0; i < capacity; i++) {
+            table.get(offset(index), slot);
+            if (Arrays.equals(slot, EMPTY)) {
+                return -1;
+            }
+            if (Arrays.equals(slot, fingerprint)) {
+                return index;
+            }
+            index = (index + 1) & (capacity - 1);
+        }
+        return -1;
+    }
+
+    private static void insert(MappedByteBuffer table, int capacity, byte[] fingerprint) {
+        final byte[] slot = new byte[LENGTH];
+        int index = index(fingerprint, capacity);
+        while (true) {
+            table.get(offset(index), slot);
+            if (Arrays.equals(slot, EMPTY)) {
+                table.put(offset(index), fingerprint);
+                return;
+            }
+            index = (index + 1) & (capacity - 1);
+        }
+    }
+
+    /**
+     * @param index
+     * @return the position of the slot, below 2GB as the capacity is bounded by {@link #MAX_CAPACITY}
+     */
+    private static int offset(int index) {
+        return Math.toIntExact(HEADER + (long) index * LENGTH);
+    }
+
+    private static int index(byte[] fingerprint, int capacity) {
+        return (int) (ByteBuffer.wrap(fingerprint).getLong() & (capacity - 1));
+    }
+
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException("Fingerprint registry full: " + file);
+        }
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        final int newCapacity = capacity << 1;
+        create(tmp, newCapacity);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer newTable = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) newCapacity * LENGTH);
+            final byte[] slot = new byte[LENGTH];
+            for (int i = 0; i < capacity; i++) {
+                table.get(offset(i), slot);
+                if (!Arrays.equals(slot, EMPTY)) {
+                    insert(newTable, newCapacity, slot.clone());
+                }
+            }
+            newTable.putInt(8, size);
+            newTable.force();
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        open(file);
+        // the bloom filter is sized for the entries the new table holds before its next growth
+        initBloom();
+    }
+
+    private void initBloom() {
+        this.bloomBits = Math.max(64L, Math.max(expectedEntries, capacity * 7L / 10) * BLOOM_BITS_PER_ENTRY);
+        this.bloom = new long[(int) ((bloomBits + 63) >>> 6)];
+        final byte[] slot = new byte[LENGTH];
+        for (int i = 0; i < capacity; i++) {
+            table.get(offset(i), slot);
+            if (!Arrays.equals(slot, EMPTY)) {
+                addBloom(slot);
+            }
+        }
+    }
+
+    private void addBloom(byte[] fingerprint) {
+        final ByteBuffer buffer = ByteBuffer.wrap(fingerprint);
+        final long h1 = buffer.getLong(8);
+        final long h2 = buffer.getLong(16);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            final long bit = Math.floorMod(h1 + i * h2, bloomBits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(byte[] fingerprint) {
+        final ByteBuffer buffer = ByteBuffer.wrap(fingerprint);
+        final long h1 = buffer.getLong(8);
+        final long h2 = buffer.getLong(16);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            final long bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
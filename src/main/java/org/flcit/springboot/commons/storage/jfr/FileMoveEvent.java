@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Move of a file or a directory to an archive or reject directory.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@Name("org.flcit.storage.FileMove")
+@Label("File Move")
+@Category({ "Storage", "File" })
+@StackTrace(false)
+public final class FileMoveEvent extends Event {
+
+    @Label("Source")
+    private String source;
+
+    @Label("Target")
+    private String target;
+
+    @Label("Copied")
+    @Description("true if the target is on another device and the content has been copied")
+    private boolean copied;
+
+    /**
+     * @param source
+     * @param target
+     * @param copied
+     */
+    public void commit(Object source, Object target, boolean copied) {
+        if (shouldCommit()) {
+            this.source = String.valueOf(source);
+            this.target = String.valueOf(target);
+            this.copied = copied;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Application of a retention policy to a directory.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@Name("org.flcit.storage.Purge")
+@Label("Purge")
+@Category({ "Storage", "Retention" })
+@StackTrace(false)
+public final class PurgeEvent extends Event {
+
+    @Label("Directory")
+    private String directory;
+
+    @Label("Deleted Entries")
+    private long deleted;
+
+    /**
+     * @param directory
+     * @param deleted the number of files and directories deleted
+     */
+    public void commit(Object directory, long deleted) {
+        if (shouldCommit()) {
+            this.directory = String.valueOf(directory);
+            this.deleted = deleted;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Operation of the {@link org.flcit.springboot.commons.storage.service.StorageService}.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@Name("org.flcit.storage.Storage")
+@Label("Storage Operation")
+@Category({ "Storage", "Service" })
+@StackTrace(false)
+public final class StorageEvent extends Event {
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Path")
+    private String path;
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    /**
+     * @param operation
+     * @param path
+     * @param bytes the number of bytes written, -1 if unknown
+     */
+    public void commit(String operation, Object path, long bytes) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.path = String.valueOf(path);
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Processing of a file by a task, from the start of the command to the move of the file.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@Name("org.flcit.storage.TaskProcess")
+@Label("Task Process")
+@Category({ "Storage", "Task" })
+@StackTrace(false)
+public final class TaskProcessEvent extends Event {
+
+    @Label("Task")
+    private String task;
+
+    @Label("Path")
+    private String path;
+
+    @Label("Size")
+    @DataAmount
+    private long size;
+
+    @Label("Attempt")
+    private int attempt;
+
+    @Label("Outcome")
+    @Description("completed, retry, exception or blocked")
+    private String outcome;
+
+    /**
+     * @param task
+     * @param path
+     * @param size
+     * @param attempt
+     * @param outcome
+     */
+    public void commit(String task, Object path, long size, int attempt, String outcome) {
+        if (shouldCommit()) {
+            this.task = task;
+            this.path = String.valueOf(path);
+            this.size = size;
+            this.attempt = attempt;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+}
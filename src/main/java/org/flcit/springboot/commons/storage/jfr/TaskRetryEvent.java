@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Retry of a file after an exception.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@Name("org.flcit.storage.TaskRetry")
+@Label("Task Retry")
+@Category({ "Storage", "Task" })
+@StackTrace(false)
+public final class TaskRetryEvent extends Event {
+
+    @Label("Task")
+    private String task;
+
+    @Label("Path")
+    private String path;
+
+    @Label("Attempt")
+    private int attempt;
+
+    @Label("Exception")
+    private String exception;
+
+    /**
+     * @param task
+     * @param path
+     * @param attempt the attempt which has failed
+     * @param exception
+     */
+    public void commit(String task, Object path, int attempt, Throwable exception) {
+        if (shouldCommit()) {
+            this.task = task;
+            this.path = String.valueOf(path);
+            this.attempt = attempt;
+            this.exception = exception != null ? exception.getClass().getName() : null;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Scan of the directory of a task.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+@Name("org.flcit.storage.TaskScan")
+@Label("Task Scan")
+@Category({ "Storage", "Task" })
+@StackTrace(false)
+public final class TaskScanEvent extends Event {
+
+    @Label("Task")
+    private String task;
+
+    @Label("Directory")
+    private String directory;
+
+    @Label("Dispatched Files")
+    private long dispatched;
+
+    /**
+     * @param task
+     * @param directory
+     * @param dispatched the number of files dispatched by the scan
+     */
+    public void commit(String task, Object directory, long dispatched) {
+        if (shouldCommit()) {
+            this.task = task;
+            this.directory = String.valueOf(directory);
+            this.dispatched = dispatched;
+            commit();
+        }
+    }
+
+}
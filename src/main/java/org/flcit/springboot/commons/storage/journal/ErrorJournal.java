@@ -0,0 +1,328 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.journal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the errors of a task.
+ * <p>
+ * The records are appended to buffered rolling segments {@code errors-NNNNNN.log},
+ * a record is a header line {@code #timestamp<TAB>file<TAB>length} followed by the error.
+ * The backslashes, tabs and line breaks of the name of the file are escaped by a backslash so the header stays on one line.
+ * The position of the last record of each file is indexed in memory, the index is rebuilt from the segments when the journal is opened.
+ * The buffer is flushed by an append at least {@link #FLUSH_INTERVAL} milliseconds after the previous flush, before a query and when the journal is closed.
+ * The owner calls {@link #flushIfPending()} every {@link #FLUSH_INTERVAL} so the end of a burst of records is not kept in the buffer.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class ErrorJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ErrorJournal.class);
+    /** Maximum delay in milliseconds between two flushes of the buffer while records are appended */
+    public static final long FLUSH_INTERVAL = 1000;
+    private static final String PREFIX = "errors-";
+    private static final String SUFFIX = ".log";
+    private static final char HEADER = '#';
+    private static final char SEPARATOR = '\t';
+    private static final String ESCAPED_CHARS = "\\\t\n\r";
+    private static final String ESCAPES = "\\tnr";
+
+    private final Path directory;
+    private final long maxSegmentSize;
+    private final int maxSegments;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final List<Integer> segments = new ArrayList<>();
+    private int segment;
+    private FileChannel channel;
+    private OutputStream out;
+    private long position;
+    private long lastFlush;
+    private boolean pending;
+
+    /**
+     * @param directory
+     * @param maxSegmentSize the size in bytes from which a new segment is started
+     * @param maxSegments the number of segments kept, the oldest are deleted
+     * @throws IOException
+     */
+    public ErrorJournal(Path directory, long maxSegmentSize, int maxSegments) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSegmentSize = maxSegmentSize;
+        this.maxSegments = Math.max(1, maxSegments);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                final String name = file.getFileName().toString();
+                try {
+                    segments.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        Collections.sort(segments);
+        long end = 0;
+        for (Integer number : segments) {
+            end = load(number);
+        }
+        open(segments.isEmpty() ? 1 : segments.get(segments.size() - 1));
+        if (end < position) {
+            // drop an incomplete record written before a crash
+            channel.truncate(end);
+            position = end;
+        }
+    }
+
+    private Path getSegment(int number) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, number, SUFFIX));
+    }
+
+    /**
+     * @return the offset of the end of the last complete record
+     */
+    private long load(int number) throws IOException {
+        long offset = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(getSegment(number)), 65536)) {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            while (true) {
+                line.reset();
+                int c;
+                while ((c = in.read()) != -1 && c != '\n') {
+                    line.write(c);
+                }
+                final String[] header = c == -1 ? null : parseHeader(line.toString(StandardCharsets.UTF_8));
+                if (header == null) {
+                    return offset;
+                }
+                final long headerLength = line.size() + 1L;
+                final int length = Integer.parseInt(header[2]);
+                if (!skipFully(in, length + 1L)) {
+                    return offset;
+                }
+                index.put(header[1], new Location(number, offset, (int) headerLength + length));
+                offset += headerLength + length + 1;
+            }
+        } catch (NumberFormatException e) {
+            LOG.warn("ErrorJournal load - corrupted segment {} at {}", number, offset);
+            return offset;
+        }
+    }
+
+    /**
+     * @return false if the end of the stream is reached before n bytes are skipped
+     */
+    private static boolean skipFully(InputStream in, long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            final long skipped = in.skip(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+            } else if (in.read() == -1) {
+                return false;
+            } else {
+                remaining--;
+            }
+        }
+        return true;
+    }
+
+    private static String[] parseHeader(String header) {
+        final int first = header.indexOf(SEPARATOR);
+        final int last = header.lastIndexOf(SEPARATOR);
+        if (header.isEmpty() || header.charAt(0) != HEADER || first < 0 || last <= first) {
+            return null;
+        }
+        return new String[] { header.substring(1, first), unescape(header.substring(first + 1, last)), header.substring(last + 1) };
+    }
+
+    /**
+     * @return the name with its backslashes, tabs and line breaks escaped by a backslash
+     */
+    private static String escape(String name) {
+        StringBuilder sb = null;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final int index = ESCAPED_CHARS.indexOf(c);
+            if (index >= 0 && sb == null) {
+                sb = new StringBuilder(name.length() + 8).append(name, 0, i);
+            }
+            if (index >= 0) {
+                sb.append('\\').append(ESCAPES.charAt(index));
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? name : sb.toString();
+    }
+
+    private static String unescape(String escaped) {
+        if (escaped.indexOf('\\') < 0) {
+            return escaped;
+        }
+        final StringBuilder sb = new StringBuilder(escaped.length());
+        for (int i = 0; i < escaped.length(); i++) {
+            final char c = escaped.charAt(i);
+            if (c == '\\' && i + 1 < escaped.length()) {
+                final int index = ESCAPES.indexOf(escaped.charAt(++i));
+                sb.append(index >= 0 ? ESCAPED_CHARS.charAt(index) : escaped.charAt(i));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void open(int number) throws IOException {
+        this.segment = number;
+        if (!segments.contains(number)) {
+            segments.add(number);
+        }
+        this.channel = FileChannel.open(getSegment(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.position = channel.size();
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 65536);
+    }
+
+    /**
+     * @param file the rejected file
+     * @param error
+     * @throws IOException
+     */
+    public synchronized void append(Path file, byte[] error) throws IOException {
+        if (position >= maxSegmentSize) {
+            roll();
+        }
+        final long now = System.currentTimeMillis();
+        final String name = file.toString();
+        final byte[] header = (HEADER + String.valueOf(now) + SEPARATOR + escape(name) + SEPARATOR + error.length + '\n').getBytes(StandardCharsets.UTF_8);
+        out.write(header);
+        out.write(error);
+        out.write('\n');
+        index.put(name, new Location(segment, position, header.length + error.length));
+        position += header.length + error.length + 1L;
+        pending = true;
+        if (now - lastFlush >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        open(segment + 1);
+        while (segments.size() > maxSegments) {
+            final int oldest = segments.remove(0);
+            index.values().removeIf(location -> location.segment == oldest);
+            Files.deleteIfExists(getSegment(oldest));
+        }
+    }
+
+    /**
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+        lastFlush = System.currentTimeMillis();
+        pending = false;
+    }
+
+    /**
+     * Flush the records appended since the last flush, if any.
+     * @throws IOException
+     */
+    public synchronized void flushIfPending() throws IOException {
+        if (pending) {
+            flush();
+        }
+    }
+
+    /**
+     * @param file the rejected file
+     * @return the last error of the file or null
+     * @throws IOException
+     */
+    public synchronized ErrorRecord find(Path file) throws IOException {
+        final Location location = index.get(file.toString());
+        if (location == null) {
+            return null;
+        }
+        if (location.segment == segment) {
+            flush();
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        try (FileChannel reader = FileChannel.open(getSegment(location.segment), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && reader.read(buffer, location.offset + buffer.position()) >= 0) {
+                // read the record
+            }
+        }
+        final String record = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        final int endHeader = record.indexOf('\n');
+        final String[] header = parseHeader(endHeader < 0 ? record : record.substring(0, endHeader));
+        if (header == null) {
+            throw new IOException("Corrupted error journal record: " + file);
+        }
+        return new ErrorRecord(Long.parseLong(header[0]), header[1], record.substring(endHeader + 1));
+    }
+
+    /**
+     * @return the number of files with an indexed error
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private static final class Location {
+
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+}
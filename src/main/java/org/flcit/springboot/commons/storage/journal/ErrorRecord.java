@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.journal;
+
+/**
+ * Error of a rejected file.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class ErrorRecord {
+
+    private final long timestamp;
+    private final String file;
+    private final String error;
+
+    /**
+     * @param timestamp
+     * @param file
+     * @param error
+     */
+    public ErrorRecord(long timestamp, String file, String error) {
+        this.timestamp = timestamp;
+        this.file = file;
+        this.error = error;
+    }
+
+    /**
+     * @return the time in milliseconds of the error
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the rejected file
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return the response body of the exception if any followed by its stack trace
+     */
+    public String getError() {
+        return error;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.latency;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Distributions of the latencies of the files of a task, from their arrival in the directory to the end of their move.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class LatencyTracker {
+
+    /**
+     * Step of the life of a file.
+     */
+    public enum Stage {
+        /** From the arrival of the file to its submission to the executor */
+        INBOX,
+        /** From the submission to the start of the first attempt */
+        QUEUE,
+        /** The processing of an attempt */
+        PROCESS,
+        /** The move or the deletion of the file after its processing */
+        ARCHIVE,
+        /** From the arrival of the file to the end of its move */
+        TOTAL
+    }
+
+    private final Map<Stage, LatencyHistogram> histograms;
+
+    public LatencyTracker() {
+        final Map<Stage, LatencyHistogram> map = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            map.put(stage, new LatencyHistogram());
+        }
+        this.histograms = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * @param stage
+     * @param duration in milliseconds
+     */
+    public void record(Stage stage, long duration) {
+        histograms.get(stage).record(duration);
+    }
+
+    /**
+     * @param stage
+     * @return
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * @return the histograms by stage
+     */
+    public Map<Stage, LatencyHistogram> getHistograms() {
+        return histograms;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.listing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.flcit.springboot.commons.storage.exception.StorageException;
+
+/**
+ * Lazy listing of a directory by pages, in a memory bounded by the size of the page whatever the number of entries.
+ * <p>
+ * The entries are streamed by a {@link DirectoryStream}.
+ * A sorted page keeps the smallest entries after the token in a heap of the size of the page,
+ * the token holds the key of the last entry so the pages stay consistent when entries are added or removed.
+ * The order of the file system has no stable position to resume from, so an unsorted listing is paged by name :
+ * each page is read in one pass of the directory instead of skipping all the entries of the previous pages.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class DirectoryLister {
+
+    private static final String INVALID_TOKEN = "Invalid continuation token: %s";
+    private static final String SEPARATOR = "/";
+
+    private DirectoryLister() { }
+
+    /**
+     * @param directory
+     * @param glob the glob of the names of the entries or null
+     * @param sort the order of the entries, null for {@link ListingSort#NONE}
+     * @param descending true to reverse the order, not supported by {@link ListingSort#NONE}
+     * @param pageSize the maximum number of entries of the page
+     * @param token the token of the previous page, null for the first page
+     * @return the page
+     * @throws IOException
+     * @throws StorageException if the token is invalid or was built for another order
+     * @throws IllegalArgumentException if the page size is not positive or an unsorted listing is descending
+     */
+    public static ListingPage list(Path directory, String glob, ListingSort sort, boolean descending, int pageSize, String token) throws IOException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be positive: " + pageSize);
+        }
+        final ListingSort order = sort != null ? sort : ListingSort.NONE;
+        if (order == ListingSort.NONE && descending) {
+            throw new IllegalArgumentException("An unsorted listing can not be descending");
+        }
+        final Candidate after = token == null || token.isEmpty() ? null : decode(token, order, descending);
+        return listSorted(directory, glob, order, descending, pageSize, after);
+    }
+
+    private static ListingPage listSorted(Path directory, String glob, ListingSort sort, boolean descending, int pageSize, Candidate after) throws IOException {
+        final Comparator<Candidate> order = comparator(sort, descending);
+        // the greatest of the kept entries on top, one more than the page to know if there is a next page
+        final PriorityQueue<Candidate> heap = new PriorityQueue<>(pageSize + 1, order.reversed());
+        try (DirectoryStream<Path> stream = newDirectoryStream(directory, glob)) {
+            for (Path entry : stream) {
+                final Candidate candidate = candidate(entry, sort);
+                if (candidate == null || (after != null && order.compare(candidate, after) <= 0)) {
+                    continue;
+                }
+                if (heap.size() <= pageSize) {
+                    heap.offer(candidate);
+                } else if (order.compare(candidate, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.offer(candidate);
+                }
+            }
+        }
+        final boolean more = heap.size() > pageSize;
+        if (more) {
+            heap.poll();
+        }
+        final List<Candidate> candidates = new ArrayList<>(heap);
+        candidates.sort(order);
+        final List<StorageEntry> entries = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            // the attributes of the entries sorted by name are only read for the page
+            final BasicFileAttributes attrs = candidate.attrs != null ? candidate.attrs : readAttributes(directory.resolve(candidate.name));
+            if (attrs != null) {
+                entries.add(new StorageEntry(candidate.name, attrs));
+            }
+        }
+        final Candidate last = candidates.isEmpty() ? null : candidates.get(candidates.size() - 1);
+        return new ListingPage(entries, more ? encode(sort, descending, last.key, last.name) : null);
+    }
+
+    private static Candidate candidate(Path entry, ListingSort sort) {
+        final String name = entry.getFileName().toString();
+        if (sort != ListingSort.LAST_MODIFIED) {
+            return new Candidate(name, 0, null);
+        }
+        final BasicFileAttributes attrs = readAttributes(entry);
+        return attrs == null ? null : new Candidate(name, attrs.lastModifiedTime().toMillis(), attrs);
+    }
+
+    private static Comparator<Candidate> comparator(ListingSort sort, boolean descending) {
+        final Comparator<Candidate> byName = Comparator.comparing(candidate -> candidate.name);
+        final Comparator<Candidate> order = sort == ListingSort.LAST_MODIFIED ? Comparator.<Candidate>comparingLong(candidate -> candidate.key).thenComparing(byName) : byName;
+        return descending ? order.reversed() : order;
+    }
+
+    private static DirectoryStream<Path> newDirectoryStream(Path directory, String glob) throws IOException {
+        return glob == null || glob.isEmpty() ? Files.newDirectoryStream(directory) : Files.newDirectoryStream(directory, glob);
+    }
+
+    private static BasicFileAttributes readAttributes(Path entry) {
+        try {
+            return Files.readAttributes(entry, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // removed since the listing or not readable, not listed
+            return null;
+        }
+    }
+
+    private static String encode(ListingSort sort, boolean descending, long key, String name) {
+        final String token = sort.name() + SEPARATOR + (descending ? 1 : 0) + SEPARATOR + key + SEPARATOR + name;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Candidate decode(String token, ListingSort sort, boolean descending) {
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, 4);
+            if (parts.length != 4 || !parts[0].equals(sort.name()) || !parts[1].equals(descending ? "1" : "0")) {
+                throw new StorageException(String.format(INVALID_TOKEN, token));
+            }
+            return new Candidate(parts[3], Long.parseLong(parts[2]), null);
+        } catch (IllegalArgumentException e) {
+            throw new StorageException(String.format(INVALID_TOKEN, token), e);
+        }
+    }
+
+    private static final class Candidate {
+
+        private final String name;
+        // the last modified time of a listing by last modified time
+        private final long key;
+        private final BasicFileAttributes attrs;
+
+        private Candidate(String name, long key, BasicFileAttributes attrs) {
+            this.name = name;
+            this.key = key;
+            this.attrs = attrs;
+        }
+
+    }
+
+}
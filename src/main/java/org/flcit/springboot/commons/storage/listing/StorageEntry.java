@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.listing;
+
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Entry of a directory with the attributes read in one call.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class StorageEntry {
+
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final boolean directory;
+
+    /**
+     * @param name
+     * @param attrs
+     */
+    public StorageEntry(String name, BasicFileAttributes attrs) {
+        this.name = name;
+        this.size = attrs.size();
+        this.lastModified = attrs.lastModifiedTime().toMillis();
+        this.directory = attrs.isDirectory();
+    }
+
+    /**
+     * @return the file name in the directory
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the last modified time in milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+}
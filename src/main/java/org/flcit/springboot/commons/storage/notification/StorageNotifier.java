@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.notification;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process hand-off of the files written by {@link org.flcit.springboot.commons.storage.service.StorageService} to the listeners of their directory or of one of its parents.
+ * <p>
+ * The notification reads the attributes of the file once and costs no listing of the directory.
+ * The lookup is lock-free, the listeners are expected to return quickly.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class StorageNotifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StorageNotifier.class);
+
+    private final ConcurrentMap<Path, List<StorageListener>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory the directory whose files, at any depth, are notified
+     * @param listener
+     */
+    public void register(Path directory, StorageListener listener) {
+        listeners.computeIfAbsent(normalize(directory), key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * @param directory
+     * @param listener
+     */
+    public void unregister(Path directory, StorageListener listener) {
+        listeners.computeIfPresent(normalize(directory), (key, current) -> {
+            current.remove(listener);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    /**
+     * @return true if no listener is registered
+     */
+    public boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    /**
+     * Notify the listeners of the parents of the file, the closest first.
+     * @param file the file, closed
+     */
+    public void fileStored(Path file) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        final Path normalized = normalize(file);
+        BasicFileAttributes attrs = null;
+        for (Path directory = normalized.getParent(); directory != null; directory = directory.getParent()) {
+            final List<StorageListener> current = listeners.get(directory);
+            if (current == null) {
+                continue;
+            }
+            if (attrs == null) {
+                try {
+                    attrs = Files.readAttributes(normalized, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // removed or moved by a concurrent writer, the scans will see the next state
+                    LOG.debug("StorageNotifier fileStored - {} : {}", normalized, e.toString());
+                    return;
+                }
+            }
+            for (StorageListener listener : current) {
+                notify(listener, normalized, attrs);
+            }
+        }
+    }
+
+    private static void notify(StorageListener listener, Path file, BasicFileAttributes attrs) {
+        try {
+            listener.fileStored(file, attrs);
+        } catch (RuntimeException e) {
+            LOG.error(String.format("StorageNotifier notify - %s", file), e);
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+}
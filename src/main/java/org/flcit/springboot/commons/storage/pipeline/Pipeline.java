@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.pipeline;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chain of stages, each one with its own threads and a bounded queue.
+ * <p>
+ * When the queue of a stage is full, the thread of the previous stage waits for a place, so a slow stage slows down the
+ * stages before it instead of accumulating the items in memory.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class Pipeline implements Closeable {
+
+    private final String name;
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * @param name the prefix of the names of the threads
+     */
+    public Pipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add a stage at the end of the pipeline.
+     * 
+     * @param <I>
+     * @param <O>
+     * @param stageName
+     * @param threads the number of threads running the stage
+     * @param queueCapacity the number of items waiting for the stage
+     * @param stage
+     * @return this pipeline
+     */
+    public synchronized <I, O> Pipeline stage(String stageName, int threads, int queueCapacity, PipelineStage<I, O> stage) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        }
+        stages.add(new Stage(name + "-" + stageName, threads, queueCapacity, stage));
+        return this;
+    }
+
+    /**
+     * @param input
+     * @return the future of the output of the last stage
+     */
+    public CompletableFuture<Object> submit(Object input) {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        execute(0, input, result);
+        return result;
+    }
+
+    /**
+     * @return the metrics of the stages in order
+     */
+    public List<StageMetrics> getMetrics() {
+        final List<StageMetrics> metrics = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            metrics.add(stage.getMetrics());
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    /**
+     * Stop the threads once the items already submitted have left the pipeline.
+     */
+    @Override
+    public void close() {
+        for (Stage stage : stages) {
+            stage.executor.shutdown();
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes", "java:S1181" })
+    private void execute(final int index, final Object input, final CompletableFuture<Object> result) {
+        if (index == stages.size()) {
+            result.complete(input);
+            return;
+        }
+        final Stage stage = stages.get(index);
+        stage.executor.execute(() -> {
+            final long start = System.nanoTime();
+            final Object output;
+            try {
+                output = ((PipelineStage) stage.stage).apply(input);
+            } catch (Throwable e) {
+                // an Error must also complete the future or the caller waits forever
+                stage.record(System.nanoTime() - start, false);
+                result.completeExceptionally(e);
+                return;
+            }
+            stage.record(System.nanoTime() - start, true);
+            try {
+                execute(index + 1, output, result);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static final class Stage {
+
+        private final String name;
+        private final int threads;
+        private final int queueCapacity;
+        private final PipelineStage<?, ?> stage;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final AtomicLong maxTime = new AtomicLong();
+
+        private Stage(String name, int threads, int queueCapacity, PipelineStage<?, ?> stage) {
+            this.name = name;
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+            this.stage = stage;
+            final AtomicInteger count = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+                final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, Stage::waitForPlace);
+        }
+
+        private static void waitForPlace(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                // let the items already in the pipeline reach its end
+                r.run();
+                return;
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        }
+
+        private void record(long time, boolean success) {
+            (success ? completed : failed).increment();
+            totalTime.add(time);
+            maxTime.accumulateAndGet(time, Math::max);
+        }
+
+        private StageMetrics getMetrics() {
+            return new StageMetrics(name, threads, executor.getActiveCount(), executor.getQueue().size(), queueCapacity,
+                    completed.sum(), failed.sum(), totalTime.sum(), maxTime.get());
+        }
+
+    }
+
+}
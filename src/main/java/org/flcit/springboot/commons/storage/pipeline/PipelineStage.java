@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.pipeline;
+
+/**
+ * 
+ * @param <I> the type of the input of the stage
+ * @param <O> the type of the output passed to the next stage
+ * @since 
+ * @author Florian Lestic
+ */
+@FunctionalInterface
+public interface PipelineStage<I, O> {
+
+    /**
+     * @param input
+     * @return
+     * @throws Exception
+     */
+    @SuppressWarnings("java:S112")
+    O apply(I input) throws Exception;
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.pipeline;
+
+/**
+ * Snapshot of the activity of a {@link Pipeline} stage.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class StageMetrics {
+
+    private final String name;
+    private final int threads;
+    private final int active;
+    private final int queued;
+    private final int queueCapacity;
+    private final long completed;
+    private final long failed;
+    private final long totalTime;
+    private final long maxTime;
+
+    StageMetrics(String name, int threads, int active, int queued, int queueCapacity, long completed, long failed, long totalTime, long maxTime) {
+        this.name = name;
+        this.threads = threads;
+        this.active = active;
+        this.queued = queued;
+        this.queueCapacity = queueCapacity;
+        this.completed = completed;
+        this.failed = failed;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the number of threads running the stage
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return the number of items waiting for the stage
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the total time in nanoseconds spent in the stage
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return the maximum time in nanoseconds spent by an item in the stage
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * @return the average time in nanoseconds spent by an item in the stage
+     */
+    public long getAverageTime() {
+        final long count = completed + failed;
+        return count == 0 ? 0 : totalTime / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[threads=%d, active=%d, queued=%d/%d, completed=%d, failed=%d, avg=%dus, max=%dus]",
+                name, threads, active, queued, queueCapacity, completed, failed, getAverageTime() / 1000, maxTime / 1000);
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.priority;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flcit.springboot.commons.storage.filter.PathFilter;
+
+/**
+ * Prioritizer giving the priority of the first matching rule.
+ * <pre>
+ * new FilePrioritizers()
+ *     .rule(PathFilters.glob("URGENT_*"), 10)
+ *     .rule(PathFilters.under(bulk), -10)
+ *     .rule(PathFilters.size(100000000, -1), -5);
+ * </pre>
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class FilePrioritizers implements FilePrioritizer {
+
+    private final List<PathFilter> filters = new ArrayList<>();
+    private final List<Integer> priorities = new ArrayList<>();
+    private int defaultPriority;
+
+    /**
+     * @param filter
+     * @param priority
+     * @return
+     */
+    public FilePrioritizers rule(PathFilter filter, int priority) {
+        filters.add(filter);
+        priorities.add(priority);
+        return this;
+    }
+
+    /**
+     * @param priority the priority of the files not matching any rule, 0 by default
+     * @return
+     */
+    public FilePrioritizers otherwise(int priority) {
+        this.defaultPriority = priority;
+        return this;
+    }
+
+    @Override
+    public int priority(Path file, BasicFileAttributes attrs) {
+        for (int i = 0; i < filters.size(); i++) {
+            if (filters.get(i).accept(file, attrs)) {
+                return priorities.get(i);
+            }
+        }
+        return defaultPriority;
+    }
+
+}
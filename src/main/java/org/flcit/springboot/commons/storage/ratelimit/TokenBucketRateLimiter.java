@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.ratelimit;
+
+/**
+ * Limiter of the number of files and of bytes per second, declared as a bean to be shared by several tasks.
+ * <p>
+ * Each limit is a token bucket holding one second of tokens, so a burst of one second is allowed after an idle period.
+ * A file larger than the bucket is let through and its excess delays the next files.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class TokenBucketRateLimiter {
+
+    private final Bucket files = new Bucket();
+    private final Bucket bytes = new Bucket();
+
+    /**
+     * @param filesPerSecond the number of files per second, 0 or less for no limit
+     * @param bytesPerSecond the number of bytes per second, 0 or less for no limit
+     */
+    public TokenBucketRateLimiter(double filesPerSecond, double bytesPerSecond) {
+        setFilesPerSecond(filesPerSecond);
+        setBytesPerSecond(bytesPerSecond);
+    }
+
+    /**
+     * @param size the size in bytes of the file
+     * @return true if the tokens of one file of the size were available and have been taken
+     */
+    public boolean tryAcquire(long size) {
+        synchronized (this) {
+            if (!files.available(1) || !bytes.available(size)) {
+                return false;
+            }
+            files.take(1);
+            bytes.take(size);
+            return true;
+        }
+    }
+
+    /**
+     * @param size the size in bytes of the file
+     * @return the time in milliseconds until the tokens of one file of the size are available, 0 if they are
+     */
+    public long waitTime(long size) {
+        return Math.max(files.waitTime(1), bytes.waitTime(size));
+    }
+
+    /**
+     * @return the number of files per second, 0 for no limit
+     */
+    public double getFilesPerSecond() {
+        return files.getRate();
+    }
+
+    /**
+     * @param filesPerSecond the number of files per second, 0 or less for no limit
+     */
+    public void setFilesPerSecond(double filesPerSecond) {
+        files.setRate(filesPerSecond);
+    }
+
+    /**
+     * @return the number of bytes per second, 0 for no limit
+     */
+    public double getBytesPerSecond() {
+        return bytes.getRate();
+    }
+
+    /**
+     * @param bytesPerSecond the number of bytes per second, 0 or less for no limit
+     */
+    public void setBytesPerSecond(double bytesPerSecond) {
+        bytes.setRate(bytesPerSecond);
+    }
+
+    private static final class Bucket {
+
+        private double rate;
+        private double tokens;
+        private long refillTime = System.nanoTime();
+
+        private synchronized double getRate() {
+            return rate;
+        }
+
+        private synchronized void setRate(double rate) {
+            refill();
+            this.rate = Math.max(0, rate);
+            this.tokens = Math.min(tokens, this.rate);
+        }
+
+        private synchronized boolean available(double count) {
+            if (rate <= 0) {
+                return true;
+            }
+            refill();
+            return tokens >= Math.min(count, rate);
+        }
+
+        private synchronized long waitTime(double count) {
+            if (rate <= 0) {
+                return 0;
+            }
+            refill();
+            final double missing = Math.min(count, rate) - tokens;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / rate * 1000);
+        }
+
+        /**
+         * Take the tokens, those missing are taken in advance.
+         */
+        private synchronized void take(double count) {
+            if (rate <= 0) {
+                return;
+            }
+            refill();
+            tokens -= count;
+        }
+
+        private void refill() {
+            final long now = System.nanoTime();
+            if (rate > 0) {
+                tokens = Math.min(rate, tokens + (now - refillTime) * rate / 1e9);
+            }
+            refillTime = now;
+        }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.retention;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.flcit.springboot.commons.storage.archive.ArchiveIndex;
+import org.flcit.springboot.commons.storage.archive.ArchiveLayout;
+import org.flcit.springboot.commons.storage.jfr.PurgeEvent;
+import org.flcit.springboot.commons.storage.scan.FilesScanner;
+import org.flcit.springboot.commons.storage.usage.StorageUsage;
+
+/**
+ * Apply {@link RetentionPolicy} to their directories.
+ * <p>
+ * The deletions are paced to a maximum number of operations per second so a pass never competes with the live processing.
+ * The size and the number of files of the closed day directories are computed once and cached.
+ * An interruption of the thread stops the pass at the next deletion.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class RetentionEngine implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetentionEngine.class);
+
+    private final List<RetentionPolicy> policies;
+    private final long operationInterval;
+    private final Map<Path, Usage> usages = new ConcurrentHashMap<>();
+    private long nextOperation;
+    private long deleted;
+    private StorageUsage usage;
+
+    /**
+     * @param policies
+     * @param operationsPerSecond the maximum number of deletions per second, 0 for no limit
+     */
+    public RetentionEngine(List<RetentionPolicy> policies, int operationsPerSecond) {
+        this.policies = new ArrayList<>(policies);
+        this.operationInterval = operationsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / operationsPerSecond : 0;
+    }
+
+    /**
+     * @return
+     */
+    public List<RetentionPolicy> getPolicies() {
+        return policies;
+    }
+
+    /**
+     * @param usage the usage of the directories of the storage to update on the deletions, or null
+     */
+    public void setUsage(StorageUsage usage) {
+        this.usage = usage;
+    }
+
+    @Override
+    public synchronized void run() {
+        for (RetentionPolicy policy : policies) {
+            if (!policy.hasLimit() || !Files.isDirectory(policy.getDirectory())) {
+                continue;
+            }
+            final PurgeEvent event = new PurgeEvent();
+            event.begin();
+            deleted = 0;
+            try {
+                if (policy.isDated()) {
+                    applyDated(policy);
+                } else {
+                    applyFlat(policy);
+                }
+            } catch (IOException e) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(String.format("RetentionEngine run - %s", policy.getDirectory()), e);
+                }
+            }
+            event.commit(policy.getDirectory(), deleted);
+            if (interrupted()) {
+                return;
+            }
+        }
+    }
+
+    private void applyFlat(RetentionPolicy policy) throws IOException {
+        final long maxTime = policy.getMaxAge() > 0 ? System.currentTimeMillis() - policy.getMaxAge() : Long.MIN_VALUE;
+        final List<Entry> entries = policy.hasQuota() ? new ArrayList<>() : null;
+        new FilesScanner(policy.getMaxDepth(), null).scan(policy.getDirectory(), (file, attrs) -> {
+            if (interrupted() || (policy.getExclude() != null && policy.getExclude().accept(file, attrs))) {
+                return;
+            }
+            if (attrs.lastModifiedTime().toMillis() < maxTime) {
+                delete(file);
+            } else if (entries != null) {
+                entries.add(new Entry(file, attrs.lastModifiedTime().toMillis(), attrs.size(), 1));
+            }
+        });
+        if (entries != null && !interrupted()) {
+            entries.sort(Comparator.comparingLong(Entry::getTime).reversed());
+            applyQuota(policy, entries, 0);
+        }
+    }
+
+    private void applyDated(RetentionPolicy policy) throws IOException {
+        final List<Entry> days = listDays(policy.getDirectory());
+        final LocalDate today = LocalDate.now();
+        final long maxTime = policy.getMaxAge() > 0 ? System.currentTimeMillis() - policy.getMaxAge() : Long.MIN_VALUE;
+        final List<Entry> kept = new ArrayList<>(days.size());
+        for (Entry day : days) {
+            if (interrupted()) {
+                return;
+            }
+            // a day expires when its end is older than the max age
+            if (day.time < maxTime && !day.date.equals(today)) {
+                delete(day.path);
+                usages.remove(day.path);
+            } else {
+                kept.add(day);
+            }
+        }
+        if (policy.hasQuota()) {
+            kept.sort(Comparator.comparing((Entry e) -> e.date).reversed());
+            for (Entry day : kept) {
+                if (interrupted()) {
+                    return;
+                }
+                final Usage dayUsage = usage(day.path, day.date.equals(today));
+                day.size = dayUsage.size;
+                day.count = dayUsage.count;
+            }
+            // the day directory of the current archiving is never deleted
+            applyQuota(policy, kept, 1);
+        }
+        deleteEmptyDirectories(policy.getDirectory());
+    }
+
+    private void applyQuota(RetentionPolicy policy, List<Entry> newestFirst, int keep) {
+        long size = 0;
+        long count = 0;
+        boolean exceeded = false;
+        for (int i = 0; i < newestFirst.size() && !interrupted(); i++) {
+            final Entry entry = newestFirst.get(i);
+            size += entry.size;
+            count += entry.count;
+            exceeded = exceeded
+                    || (policy.getMaxTotalSize() > 0 && size > policy.getMaxTotalSize())
+                    || (policy.getMaxCount() > 0 && count > policy.getMaxCount());
+            if (exceeded && i >= keep) {
+                delete(entry.path);
+                usages.remove(entry.path);
+            }
+        }
+    }
+
+    private static List<Entry> listDays(Path root) throws IOException {
+        final List<Entry> days = new ArrayList<>();
+        for (ArchiveLayout.Day day : ArchiveLayout.listDays(root)) {
+            days.add(new Entry(day.getPath(), day.getDate(), day.getDate().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        }
+        return days;
+    }
+
+    private Usage usage(Path day, boolean current) {
+        final Usage cached = current ? null : usages.get(day);
+        try {
+            final long lastModified = Files.getLastModifiedTime(day).toMillis();
+            if (cached != null && cached.lastModified == lastModified) {
+                return cached;
+            }
+            final Usage computed = new Usage(lastModified);
+            final Path segments = day.resolve(ArchiveIndex.SEGMENTS_DIRECTORY);
+            Files.walkFileTree(day, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    computed.size += attrs.size();
+                    if (!file.startsWith(segments)) {
+                        computed.count++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            // the compacted files are counted from the index of the segments
+            computed.count += ArchiveIndex.count(day);
+            if (!current) {
+                usages.put(day, computed);
+            }
+            return computed;
+        } catch (IOException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("RetentionEngine usage - %s", day), e);
+            }
+            return new Usage(0);
+        }
+    }
+
+    private void deleteEmptyDirectories(Path root) throws IOException {
+        for (Path year : ArchiveLayout.listNumeric(root)) {
+            if (interrupted()) {
+                return;
+            }
+            for (Path month : ArchiveLayout.listNumeric(year)) {
+                deleteIfEmpty(month);
+            }
+            deleteIfEmpty(year);
+        }
+    }
+
+    private void deleteIfEmpty(Path directory) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            if (stream.iterator().hasNext()) {
+                return;
+            }
+        }
+        delete(directory);
+    }
+
+    /**
+     * Delete a file or a whole directory tree, the sizes removed from the usage are taken from the attributes read by the walk.
+     * @param path
+     */
+    protected void delete(Path path) {
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (usage != null) {
+                        usage.changing(file);
+                    }
+                    if (deleteIfExists(file) && usage != null && attrs.isRegularFile()) {
+                        usage.removed(file, attrs.size(), 1);
+                    }
+                    return interrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    deleteIfExists(dir);
+                    return interrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // already deleted
+        } catch (IOException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("RetentionEngine delete - %s", path), e);
+            }
+        }
+    }
+
+    /**
+     * @return false without deleting once the thread is interrupted
+     */
+    private boolean deleteIfExists(Path path) throws IOException {
+        if (!pace()) {
+            return false;
+        }
+        if (Files.deleteIfExists(path)) {
+            deleted++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the thread is interrupted
+     */
+    private boolean pace() {
+        if (interrupted()) {
+            return false;
+        }
+        if (operationInterval <= 0) {
+            return true;
+        }
+        final long now = System.nanoTime();
+        final long wait = nextOperation - now;
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        nextOperation = Math.max(now, nextOperation) + operationInterval;
+        return true;
+    }
+
+    private static boolean interrupted() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    private static final class Usage {
+
+        private final long lastModified;
+        private long size;
+        private long count;
+
+        private Usage(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final Path path;
+        private final LocalDate date;
+        private final long time;
+        private long size;
+        private long count;
+
+        private Entry(Path path, long time, long size, long count) {
+            this.path = path;
+            this.date = null;
+            this.time = time;
+            this.size = size;
+            this.count = count;
+        }
+
+        private Entry(Path path, LocalDate date, long time) {
+            this.path = path;
+            this.date = date;
+            this.time = time;
+        }
+
+        private long getTime() {
+            return time;
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.retention;
+
+import java.nio.file.Path;
+
+import org.flcit.springboot.commons.storage.filter.PathFilter;
+
+/**
+ * Retention limits of a directory, a negative or zero limit is not applied.
+ * <p>
+ * The entries of a dated directory are the day directories of the {@code yyyy/MM/dd} tree built by the archiving,
+ * they are deleted as a whole. The entries of a flat directory are the files and the directories at the max depth.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class RetentionPolicy {
+
+    private final Path directory;
+    private final boolean dated;
+    private final int maxDepth;
+    private final long maxAge;
+    private final long maxTotalSize;
+    private final int maxCount;
+    private final PathFilter exclude;
+
+    /**
+     * @param directory
+     * @param dated true for a {@code yyyy/MM/dd} tree
+     * @param maxAge the maximum age in milliseconds
+     * @param maxTotalSize the maximum total size in bytes
+     * @param maxCount the maximum number of entries
+     */
+    public RetentionPolicy(Path directory, boolean dated, long maxAge, long maxTotalSize, int maxCount) {
+        this(directory, dated, 1, maxAge, maxTotalSize, maxCount, null);
+    }
+
+    /**
+     * @param directory
+     * @param dated true for a {@code yyyy/MM/dd} tree
+     * @param maxDepth the depth of the entries of a flat directory
+     * @param maxAge the maximum age in milliseconds
+     * @param maxTotalSize the maximum total size in bytes
+     * @param maxCount the maximum number of entries
+     * @param exclude the entries of a flat directory never deleted, may be null
+     */
+    public RetentionPolicy(Path directory, boolean dated, int maxDepth, long maxAge, long maxTotalSize, int maxCount, PathFilter exclude) {
+        this.directory = directory;
+        this.dated = dated;
+        this.maxDepth = maxDepth;
+        this.maxAge = maxAge;
+        this.maxTotalSize = maxTotalSize;
+        this.maxCount = maxCount;
+        this.exclude = exclude;
+    }
+
+    /**
+     * @return
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isDated() {
+        return dated;
+    }
+
+    /**
+     * @return
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @return
+     */
+    public long getMaxTotalSize() {
+        return maxTotalSize;
+    }
+
+    /**
+     * @return
+     */
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * @return
+     */
+    public PathFilter getExclude() {
+        return exclude;
+    }
+
+    boolean hasLimit() {
+        return maxAge > 0 || maxTotalSize > 0 || maxCount > 0;
+    }
+
+    boolean hasQuota() {
+        return maxTotalSize > 0 || maxCount > 0;
+    }
+
+}
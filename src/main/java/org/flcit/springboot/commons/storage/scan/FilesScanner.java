@@ -0,0 +1,362 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.scan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scan a directory tree up to a maximum depth.
+ * <p>
+ * Each directory is listed with {@link Files#walkFileTree} so the {@link BasicFileAttributes} of an entry are read only once.
+ * Entries are handed to the visitor as soon as they are listed : files at any depth and directories at the maximum depth.
+ * Directories above the maximum depth are walked into, in parallel when a {@link ForkJoinPool} is provided.
+ * <p>
+ * In incremental mode the modification time and the size of each listed directory are remembered
+ * and a directory is listed again only when they have changed, its known sub directories being still checked.
+ * The number of entries is not compared : it can only be known by listing the directory, which the skip avoids,
+ * and adding, removing or renaming an entry already changes the modification time of its directory.
+ * It is kept for the traces only.
+ * A full scan is done periodically as a backstop.
+ * <p>
+ * The entries of the directories at the maximum depth may be filtered by name before their attributes are read.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class FilesScanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FilesScanner.class);
+    /*
+     * Covers the coarsest modification time resolution (FAT, CIFS) :
+     * an entry added in the same tick than the listing would not change the modification time
+     */
+    private static final long MTIME_GRANULARITY = 2000;
+
+    private final int maxDepth;
+    private final ForkJoinPool pool;
+    private final boolean incremental;
+    private final long fullScanInterval;
+    private final Map<Path, DirectoryState> directories;
+    private final Predicate<Path> leafFilter;
+    private long lastFullScan;
+
+    /**
+     * @param maxDepth
+     * @param pool the pool used to walk into the sub directories, may be null to scan in the calling thread
+     */
+    public FilesScanner(int maxDepth, ForkJoinPool pool) {
+        this(maxDepth, pool, false, 0);
+    }
+
+    /**
+     * @param maxDepth
+     * @param pool the pool used to walk into the sub directories, may be null to scan in the calling thread
+     * @param incremental
+     * @param fullScanInterval the minimum delay in milliseconds between two full scans in incremental mode
+     */
+    public FilesScanner(int maxDepth, ForkJoinPool pool, boolean incremental, long fullScanInterval) {
+        this(maxDepth, pool, incremental, fullScanInterval, null);
+    }
+
+    /**
+     * @param maxDepth
+     * @param pool the pool used to walk into the sub directories, may be null to scan in the calling thread
+     * @param incremental
+     * @param fullScanInterval the minimum delay in milliseconds between two full scans in incremental mode
+     * @param leafFilter the filter of the entries of the directories at the maximum depth, applied before their attributes are read, may be null
+     */
+    public FilesScanner(int maxDepth, ForkJoinPool pool, boolean incremental, long fullScanInterval, Predicate<Path> leafFilter) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be greater than 0");
+        }
+        this.maxDepth = maxDepth;
+        this.pool = pool;
+        this.incremental = incremental;
+        this.fullScanInterval = fullScanInterval;
+        this.directories = incremental ? new ConcurrentHashMap<>() : null;
+        this.leafFilter = leafFilter;
+    }
+
+    /**
+     * @return
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Force the next scan to list the directory again.
+     * @param directory
+     */
+    public void invalidate(Path directory) {
+        if (incremental && directory != null) {
+            directories.remove(directory);
+        }
+    }
+
+    /**
+     * Force the next scan to be a full scan.
+     */
+    public synchronized void invalidateAll() {
+        this.lastFullScan = 0;
+    }
+
+    /**
+     * The visitor may be called concurrently by the threads of the pool.
+     * @param root
+     * @param visitor
+     * @return true if all the directories have been listed, false if unchanged directories have been skipped
+     * @throws IOException if the root directory can not be listed
+     */
+    public boolean scan(Path root, BiConsumer<Path, BasicFileAttributes> visitor) throws IOException {
+        final boolean full = !incremental || startFullScan();
+        try {
+            if (pool == null) {
+                scanDirectory(root, null, 1, visitor, null, full);
+            } else {
+                pool.invoke(new ScanAction(root, null, 1, visitor, full));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return full;
+    }
+
+    private synchronized boolean startFullScan() {
+        final long now = System.currentTimeMillis();
+        if (now - lastFullScan >= fullScanInterval) {
+            lastFullScan = now;
+            return true;
+        }
+        return false;
+    }
+
+    private void scanDirectory(Path directory, BasicFileAttributes attrs, int depth, BiConsumer<Path, BasicFileAttributes> visitor, List<ScanAction> forks, boolean full) throws IOException {
+        if (!incremental) {
+            list(directory, null, depth, visitor, forks, full);
+            return;
+        }
+        final long time = System.currentTimeMillis();
+        final BasicFileAttributes directoryAttrs = attrs != null ? attrs : Files.readAttributes(directory, BasicFileAttributes.class);
+        final DirectoryState state = directories.get(directory);
+        if (!full && state != null && state.unchanged(directoryAttrs)) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("FilesScanner skip unchanged directory - {} ({} entries)", directory, state.entries);
+            }
+            for (Path subDirectory : state.subDirectories) {
+                scanSubDirectory(subDirectory, null, depth + 1, visitor, forks, full);
+            }
+            return;
+        }
+        list(directory, new DirectoryState(directoryAttrs, time), depth, visitor, forks, full);
+    }
+
+    private void list(Path directory, DirectoryState state, int depth, BiConsumer<Path, BasicFileAttributes> visitor, List<ScanAction> forks, boolean full) throws IOException {
+        final List<Path> subDirectories = new ArrayList<>();
+        final int[] entries = new int[1];
+        if (leafFilter != null && depth == maxDepth) {
+            listLeaf(directory, visitor, entries);
+        } else {
+            walk(directory, depth, visitor, forks, full, subDirectories, entries);
+        }
+        if (state != null) {
+            state.entries = entries[0];
+            state.subDirectories = subDirectories;
+            final DirectoryState previous = directories.put(directory, state);
+            if (previous != null) {
+                for (Path subDirectory : previous.subDirectories) {
+                    if (!subDirectories.contains(subDirectory)) {
+                        forget(subDirectory);
+                    }
+                }
+            }
+        }
+    }
+
+    private void listLeaf(Path directory, BiConsumer<Path, BasicFileAttributes> visitor, int[] entries) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                entries[0]++;
+                if (leafFilter.test(entry)) {
+                    visitLeaf(entry, visitor);
+                }
+            }
+        }
+    }
+
+    private static void visitLeaf(Path entry, BiConsumer<Path, BasicFileAttributes> visitor) {
+        final BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("FilesScanner visitFileFailed - %s", entry), e);
+            }
+            return;
+        }
+        visitor.accept(entry, attrs);
+    }
+
+    private void walk(Path directory, int depth, BiConsumer<Path, BasicFileAttributes> visitor, List<ScanAction> forks, boolean full, List<Path> subDirectories, int[] entries) throws IOException {
+        Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                entries[0]++;
+                if (attrs.isDirectory() && depth < maxDepth) {
+                    subDirectories.add(file);
+                    scanSubDirectory(file, attrs, depth + 1, visitor, forks, full);
+                } else {
+                    visitor.accept(file, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (file.equals(directory)) {
+                    throw exc;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("FilesScanner visitFileFailed - %s", file), exc);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void scanSubDirectory(Path directory, BasicFileAttributes attrs, int depth, BiConsumer<Path, BasicFileAttributes> visitor, List<ScanAction> forks, boolean full) {
+        if (forks != null) {
+            final ScanAction action = new ScanAction(directory, attrs, depth, visitor, full);
+            action.fork();
+            forks.add(action);
+        } else {
+            safeScanDirectory(directory, attrs, depth, visitor, null, full);
+        }
+    }
+
+    private void safeScanDirectory(Path directory, BasicFileAttributes attrs, int depth, BiConsumer<Path, BasicFileAttributes> visitor, List<ScanAction> forks, boolean full) {
+        try {
+            scanDirectory(directory, attrs, depth, visitor, forks, full);
+        } catch (NoSuchFileException e) {
+            forget(directory);
+        } catch (IOException e) {
+            // the directory may have been moved since it has been listed
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("FilesScanner list - %s", directory), e);
+            }
+        }
+    }
+
+    private void forget(Path directory) {
+        if (!incremental) {
+            return;
+        }
+        final DirectoryState state = directories.remove(directory);
+        if (state != null) {
+            for (Path subDirectory : state.subDirectories) {
+                forget(subDirectory);
+            }
+        }
+    }
+
+    private static final class DirectoryState {
+
+        private final long lastModified;
+        private final long size;
+        private final boolean trusted;
+        private int entries;
+        private List<Path> subDirectories;
+
+        private DirectoryState(BasicFileAttributes attrs, long time) {
+            this.lastModified = attrs.lastModifiedTime().toMillis();
+            this.size = attrs.size();
+            this.trusted = time - lastModified > MTIME_GRANULARITY;
+        }
+
+        private boolean unchanged(BasicFileAttributes attrs) {
+            return trusted
+                    && lastModified == attrs.lastModifiedTime().toMillis()
+                    && size == attrs.size();
+        }
+
+    }
+
+    @SuppressWarnings("serial")
+    private final class ScanAction extends RecursiveAction {
+
+        private final transient Path directory;
+        private final transient BasicFileAttributes attrs;
+        private final int depth;
+        private final transient BiConsumer<Path, BasicFileAttributes> visitor;
+        private final boolean full;
+
+        private ScanAction(Path directory, BasicFileAttributes attrs, int depth, BiConsumer<Path, BasicFileAttributes> visitor, boolean full) {
+            this.directory = directory;
+            this.attrs = attrs;
+            this.depth = depth;
+            this.visitor = visitor;
+            this.full = full;
+        }
+
+        @Override
+        protected void compute() {
+            final List<ScanAction> forks = new ArrayList<>();
+            if (depth == 1) {
+                try {
+                    scanDirectory(directory, attrs, depth, visitor, forks, full);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                safeScanDirectory(directory, attrs, depth, visitor, forks, full);
+            }
+            for (ScanAction fork : forks) {
+                fork.join();
+            }
+        }
+
+    }
+
+}
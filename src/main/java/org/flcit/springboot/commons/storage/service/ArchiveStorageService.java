@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+
+import org.flcit.springboot.commons.storage.archive.ArchiveIndex;
+import org.flcit.springboot.commons.storage.archive.ArchiveLayout;
+import org.flcit.springboot.commons.storage.exception.StorageException;
+import org.flcit.springboot.commons.storage.exception.StorageFileNotFoundException;
+
+/**
+ * Read the archived files of a {@code yyyy/MM/d} tree, from the day directory or from its compacted segments.
+ * <p>
+ * Nothing is cached, a compacted file is found by a binary search in the index of its day.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class ArchiveStorageService {
+
+    private static final String FORMAT_NOT_FOUND = "Archived file not found: %s";
+
+    private final Path rootLocation;
+
+    /**
+     * @param rootLocation the root of the {@code yyyy/MM/d} tree
+     */
+    public ArchiveStorageService(Path rootLocation) {
+        this.rootLocation = rootLocation;
+    }
+
+    /**
+     * @param date
+     * @param filename the path of the file relative to the day directory, with '/' separators
+     * @return
+     */
+    public boolean exists(LocalDate date, String filename) {
+        final Path day = ArchiveLayout.resolve(rootLocation, date);
+        return Files.exists(day.resolve(filename)) || getEntry(day, filename) != null;
+    }
+
+    /**
+     * @param date
+     * @param filename the path of the file relative to the day directory, with '/' separators
+     * @return
+     * @throws IOException
+     */
+    public InputStream loadAsInputStream(LocalDate date, String filename) throws IOException {
+        final Path day = ArchiveLayout.resolve(rootLocation, date);
+        final Path file = day.resolve(filename);
+        if (Files.isRegularFile(file)) {
+            return Files.newInputStream(file);
+        }
+        final ArchiveIndex.Entry entry = getEntry(day, filename);
+        if (entry == null) {
+            throw new StorageFileNotFoundException(String.format(FORMAT_NOT_FOUND, filename));
+        }
+        return entry.newInputStream();
+    }
+
+    /**
+     * @param date
+     * @param filename the path of the file relative to the day directory, with '/' separators
+     * @return
+     */
+    public Resource loadAsResource(LocalDate date, String filename) {
+        try {
+            return new InputStreamResource(loadAsInputStream(date, filename), filename);
+        } catch (IOException e) {
+            throw new StorageException("Could not read archived file: " + filename, e);
+        }
+    }
+
+    private ArchiveIndex.Entry getEntry(Path day, String filename) {
+        try {
+            return ArchiveIndex.find(day, filename);
+        } catch (IOException e) {
+            throw new StorageException("Could not read archive index: " + day, e);
+        }
+    }
+
+}
@@ -16,18 +16,35 @@
 
 package org.flcit.springboot.commons.storage.service;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import org.flcit.commons.core.file.util.FileUtils;
 import org.flcit.commons.core.util.StringUtils;
+import org.flcit.springboot.commons.storage.archive.ArchiveFormat;
+import org.flcit.springboot.commons.storage.archive.ArchiveStreamer;
 import org.flcit.springboot.commons.storage.configuration.StorageProperties;
 import org.flcit.springboot.commons.storage.exception.StorageException;
 import org.flcit.springboot.commons.storage.exception.StorageFileNotFoundException;
+import org.flcit.springboot.commons.storage.filter.PathFilter;
+import org.flcit.springboot.commons.storage.filter.PathFilters;
+import org.flcit.springboot.commons.storage.jfr.StorageEvent;
+import org.flcit.springboot.commons.storage.listing.DirectoryLister;
+import org.flcit.springboot.commons.storage.listing.ListingPage;
+import org.flcit.springboot.commons.storage.listing.ListingSort;
+import org.flcit.springboot.commons.storage.notification.StorageNotifier;
+import org.flcit.springboot.commons.storage.usage.StorageUsage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamSource;
 import org.springframework.core.io.Resource;
@@ -44,14 +61,81 @@ import org.springframework.util.FileCopyUtils;
 public class StorageService {
 
     private static final String FORMAT_NOT_READ_FILE = "Could not read file: %s";
+    private static final String FORMAT_NOT_LIST_DIRECTORY = "Could not list directory: %s";
+    private static final String FORMAT_NOT_ARCHIVE_DIRECTORY = "Could not archive directory: %s";
 
     private final Path rootLocation;
+    private StorageNotifier notifier;
+    private StorageUsage usage;
 
     @Autowired
     private StorageService(StorageProperties storageProperties) {
         this.rootLocation = storageProperties.getLocation();
     }
 
+    /**
+     * @param notifier the notifier of the files written, to the tasks of their directory
+     */
+    @Autowired(required = false)
+    public void setNotifier(StorageNotifier notifier) {
+        this.notifier = notifier;
+    }
+
+    /**
+     * @param usage the usage of the directories, updated by the writes and the deletions and checked against the quotas
+     */
+    @Autowired(required = false)
+    public void setUsage(StorageUsage usage) {
+        this.usage = usage;
+    }
+
+    private long beforeWrite(Path path) throws IOException {
+        if (usage == null) {
+            return -1;
+        }
+        usage.changing(path);
+        usage.checkQuota(path, 0);
+        return sizeIfExists(path);
+    }
+
+    /**
+     * With the usage, the file is written beside its target then checked against the quotas before replacing it,
+     * under the {@link PathFilters#STAGING_PREFIX} which the tasks never take.
+     * @param path
+     * @return the file to write
+     */
+    private Path writing(Path path) {
+        return usage == null ? path : path.resolveSibling(PathFilters.STAGING_PREFIX + path.getFileName());
+    }
+
+    private void afterWrite(Path path, Path written, long previous) throws IOException {
+        if (usage != null) {
+            final long size = Files.size(written);
+            final long bytes = size - Math.max(0, previous);
+            try {
+                usage.checkQuota(path, bytes);
+            } catch (StorageException e) {
+                // the previous content of the file is kept
+                Files.deleteIfExists(written);
+                throw e;
+            }
+            Files.move(written, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            usage.added(path, bytes, previous < 0 ? 1 : 0);
+        }
+        if (notifier != null) {
+            notifier.fileStored(path);
+        }
+    }
+
+    private static long sizeIfExists(Path path) throws IOException {
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return attrs.isRegularFile() ? attrs.size() : -1;
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
     /**
      * @param file
      * @param directory
@@ -76,9 +160,23 @@ public class StorageService {
         if (file == null) {
             throw new StorageException("Failed to store nullable file: " + name);
         }
+        final StorageEvent event = new StorageEvent();
+        event.begin();
         try {
             path = path.resolve(StringUtils.toIso88591(org.springframework.util.StringUtils.hasLength(name) ? name : originalFilename));
-            FileCopyUtils.copy(file.getInputStream(), Files.newOutputStream(path));
+            final long previous = beforeWrite(path);
+            final Path written = writing(path);
+            final int bytes;
+            try {
+                bytes = FileCopyUtils.copy(file.getInputStream(), Files.newOutputStream(written));
+            } catch (IOException e) {
+                if (written != path) {
+                    Files.deleteIfExists(written);
+                }
+                throw e;
+            }
+            event.commit("copy", path, bytes);
+            afterWrite(path, written, previous);
             return path;
         } catch (IOException e) {
             throw new StorageException("Failed to store file: " + originalFilename, e);
@@ -99,13 +197,92 @@ public class StorageService {
      * @return
      */
     public boolean delete(Path path) {
+        final StorageEvent event = new StorageEvent();
+        event.begin();
         try {
-            return Files.deleteIfExists(path);
+            if (usage != null) {
+                usage.changing(path);
+            }
+            final long previous = usage == null ? -1 : sizeIfExists(path);
+            final boolean deleted = Files.deleteIfExists(path);
+            event.commit("delete", path, -1);
+            if (deleted && previous >= 0) {
+                usage.removed(path, previous, 1);
+            }
+            return deleted;
         } catch (Exception e) {
             throw new StorageException("Could not delete file: " + path, e);
         }
     }
 
+    /**
+     * @param directory
+     * @param pageSize the maximum number of entries of the page
+     * @param token the token of the previous page, null for the first page
+     * @return the page of the entries without order required
+     */
+    public ListingPage list(String directory, int pageSize, String token) {
+        return list(directory, null, ListingSort.NONE, false, pageSize, token);
+    }
+
+    /**
+     * @param directory
+     * @param glob the glob of the names of the entries or null
+     * @param sort the order of the entries
+     * @param descending true to reverse the order, not supported without order
+     * @param pageSize the maximum number of entries of the page
+     * @param token the token of the previous page, null for the first page
+     * @return the page, its entries are read lazily with a memory bounded by the page size
+     */
+    public ListingPage list(String directory, String glob, ListingSort sort, boolean descending, int pageSize, String token) {
+        final StorageEvent event = new StorageEvent();
+        event.begin();
+        final Path path = load(directory);
+        try {
+            final ListingPage page = DirectoryLister.list(path, glob, sort, descending, pageSize, token);
+            event.commit("list", path, -1);
+            return page;
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            throw new StorageFileNotFoundException(String.format(FORMAT_NOT_LIST_DIRECTORY, directory), e);
+        } catch (IOException e) {
+            throw new StorageException(String.format(FORMAT_NOT_LIST_DIRECTORY, directory), e);
+        }
+    }
+
+    /**
+     * @param directory
+     * @param filter the filter of the regular files of the tree or null
+     * @param format
+     * @param out not closed, the archive is finished and the stream flushed
+     * @return the number of files archived
+     */
+    public long writeArchive(String directory, PathFilter filter, ArchiveFormat format, OutputStream out) {
+        final StorageEvent event = new StorageEvent();
+        event.begin();
+        final Path path = load(directory);
+        if (!Files.isDirectory(path)) {
+            throw new StorageFileNotFoundException(String.format(FORMAT_NOT_ARCHIVE_DIRECTORY, directory));
+        }
+        try {
+            final long count = new ArchiveStreamer(format).write(path, filter, out);
+            event.commit("writeArchive", path, -1);
+            return count;
+        } catch (IOException e) {
+            throw new StorageException(String.format(FORMAT_NOT_ARCHIVE_DIRECTORY, directory), e);
+        }
+    }
+
+    /**
+     * @param directory
+     * @param filter the filter of the regular files of the tree or null
+     * @param format
+     * @param channel not closed
+     * @return the number of files archived
+     */
+    public long writeArchive(String directory, PathFilter filter, ArchiveFormat format, WritableByteChannel channel) {
+        return writeArchive(directory, filter, format, Channels.newOutputStream(channel));
+    }
+
     private Path load(String directory) {
         return rootLocation.resolve(directory);
     }
@@ -121,7 +298,28 @@ public class StorageService {
      * @throws IOException
      */
     public OutputStream loadAsOutputStream(String directory, String filename) throws IOException {
-        return Files.newOutputStream(this.load(directory).resolve(filename));
+        final StorageEvent event = new StorageEvent();
+        event.begin();
+        final Path path = this.load(directory).resolve(filename);
+        final long previous = beforeWrite(path);
+        final Path written = writing(path);
+        final OutputStream out = Files.newOutputStream(written);
+        event.commit("loadAsOutputStream", path, -1);
+        return notifier == null && usage == null ? out : new FilterOutputStream(out) {
+            private boolean closed;
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (!closed) {
+                    closed = true;
+                    afterWrite(path, written, previous);
+                }
+            }
+        };
     }
 
     /**
@@ -131,7 +329,12 @@ public class StorageService {
      * @throws IOException
      */
     public InputStream loadAsInputStream(String directory, String filename) throws IOException {
-        return Files.newInputStream(this.load(directory).resolve(filename));
+        final StorageEvent event = new StorageEvent();
+        event.begin();
+        final Path path = this.load(directory).resolve(filename);
+        final InputStream in = Files.newInputStream(path);
+        event.commit("loadAsInputStream", path, -1);
+        return in;
     }
 
     public Resource loadAsResource(String directory, String filename) {
@@ -139,9 +342,12 @@ public class StorageService {
     }
 
     private Resource loadAsResource(Path file) {
+        final StorageEvent event = new StorageEvent();
+        event.begin();
         try {
             final Resource resource = new UrlResource(file.toUri());
             if (resource.exists() || resource.isReadable()) {
+                event.commit("loadAsResource", file, -1);
                 return resource;
             } else {
                 throw new StorageFileNotFoundException(String.format(FORMAT_NOT_READ_FILE, file.getFileName()));
@@ -22,44 +22,112 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.scheduling.concurrent.ExecutorConfigurationSupport;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.ClassUtils;
-import org.springframework.util.FileSystemUtils;
 
-import org.flcit.commons.core.executor.SingleTaskThreadExecutor;
+import org.flcit.springboot.commons.storage.breaker.CircuitBreaker;
+import org.flcit.springboot.commons.storage.chunk.ChunkProcessor;
+import org.flcit.springboot.commons.storage.chunk.ChunkedFileProcessor;
+import org.flcit.springboot.commons.storage.chunk.RecordDelimiter;
+import org.flcit.springboot.commons.storage.exception.DoublonException;
+import org.flcit.springboot.commons.storage.exception.RejetException;
+import org.flcit.springboot.commons.storage.filter.PathFilter;
+import org.flcit.springboot.commons.storage.filter.PathFilters;
+import org.flcit.springboot.commons.storage.filter.ShardFilter;
+import org.flcit.springboot.commons.storage.fingerprint.FingerprintRegistry;
+import org.flcit.springboot.commons.storage.jfr.TaskDispatchEvent;
+import org.flcit.springboot.commons.storage.jfr.TaskProcessEvent;
+import org.flcit.springboot.commons.storage.jfr.TaskRetryEvent;
+import org.flcit.springboot.commons.storage.jfr.TaskScanEvent;
+import org.flcit.springboot.commons.storage.latency.LatencyTracker;
+import org.flcit.springboot.commons.storage.notification.StorageListener;
+import org.flcit.springboot.commons.storage.notification.StorageNotifier;
+import org.flcit.springboot.commons.storage.priority.FilePrioritizer;
+import org.flcit.springboot.commons.storage.ratelimit.TokenBucketRateLimiter;
+import org.flcit.springboot.commons.storage.retention.RetentionEngine;
+import org.flcit.springboot.commons.storage.retention.RetentionPolicy;
+import org.flcit.springboot.commons.storage.scan.FilesScanner;
+import org.flcit.springboot.commons.storage.usage.StorageUsage;
 
 /**
  * 
  * @since 
  * @author Florian Lestic
  */
-abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable, ApplicationListener<ContextClosedEvent> {
+abstract class AbstractFilesBackgroundTask implements FilesBackgroundTask, InitializingBean, SmartLifecycle, BeanFactoryAware, Runnable, ApplicationListener<ContextClosedEvent> {
 
     protected final Path path;
     private final FilenameFilter filenameFilter;
     private final FileFilter fileFilter;
+    private final PathFilter pathFilter;
+    private final boolean legacyAccept;
     private long retryDelayOnException = 900000;
     private final Executor executor;
     private Thread thread;
-    private final Set<Path> currentFiles = ConcurrentHashMap.newKeySet(10);
-    private boolean shutdown;
+    private final ConcurrentMap<Path, FileState> currentFiles = new ConcurrentHashMap<>(16);
+    private final AtomicLong startedTasks = new AtomicLong();
+    private final LatencyTracker latencies = new LatencyTracker();
+    private final AtomicLong retriedTasks = new AtomicLong();
+    private volatile long lastScanTime;
+    private volatile long lastScanDuration;
+    private volatile boolean paused;
+    private volatile boolean shutdown;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private ForkJoinPool scanPool;
+    private volatile FilesScanner scanner;
+    private RetentionEngine retentionEngine;
+    private TaskMaintenance maintenance;
+    private FingerprintRegistry fingerprintRegistry;
+    private FilePrioritizer prioritizer;
+    private CircuitBreaker breaker;
+    private TokenBucketRateLimiter limiter;
+    private TaskDispatcher dispatcher;
+    private ShardFilter shardFilter;
+    private ForkJoinPool chunkPool;
+    private ChunkedFileProcessor chunkedFileProcessor;
+    private BeanFactory beanFactory;
+    private StorageNotifier notifier;
+    private StorageUsage usage;
+    private final StorageListener storageListener = this::fileStored;
+    private final PriorityBlockingQueue<PendingFile> pendingFiles = new PriorityBlockingQueue<>();
+    private final AtomicLong pendingSequence = new AtomicLong();
 
     protected AbstractFilesBackgroundTask(Path path, FilenameFilter filenameFilter, Executor executor) {
         this.path = path;
         this.filenameFilter = filenameFilter;
         this.fileFilter = null;
+        this.pathFilter = PathFilters.of(filenameFilter);
+        this.legacyAccept = overridesLegacyAccept();
         this.executor = executor;
     }
 
@@ -67,6 +135,8 @@ abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable
         this.path = path;
         this.filenameFilter = null;
         this.fileFilter = fileFilter;
+        this.pathFilter = PathFilters.of(fileFilter);
+        this.legacyAccept = overridesLegacyAccept();
         this.executor = executor;
     }
 
@@ -76,10 +146,24 @@ abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable
     @Override
     public void afterPropertiesSet() throws Exception {
         if (!this.running()) {
-            if (this.purgeBeforeStart()) {
-                new SingleTaskThreadExecutor().execute(this::purge);
+            this.prioritizer = filePrioritizer();
+            this.breaker = circuitBreaker();
+            this.limiter = rateLimiter();
+            this.shardFilter = shardCount() > 1 ? new ShardFilter(shardIndex(), shardCount()) : null;
+            this.usage = storageUsage();
+            if (!getRetentionEngine().getPolicies().isEmpty()) {
+                scheduleMaintenance(this::purge, 0, retentionInterval());
+            }
+            for (Path file : createDrain().resumeClaims()) {
+                if (accept(file)) {
+                    startTask(file);
+                }
+            }
+            this.startThread();
+            this.notifier = storageNotifier();
+            if (this.notifier != null) {
+                this.notifier.register(this.path, storageListener);
             }
-            this.start();
         }
     }
 
@@ -90,28 +174,427 @@ abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable
         return this.fileFilter != null ? this.path.toFile().listFiles(fileFilter) : this.path.toFile().listFiles();
     }
 
+    /**
+     * The entries are listed by a full scan, the same as {@link #refreshFiles()}, instead of walking the tree again.
+     * @return the entries of the scan owned and accepted by this task
+     * @throws IOException
+     */
     protected Stream<Path> getStreamFiles() throws IOException {
-        return filenameFilter != null || fileFilter != null ? Files.walk(this.path, 1).skip(1).filter(this::accept) : Files.walk(this.path, 1).skip(1);
+        final List<Path> files = Collections.synchronizedList(new ArrayList<>());
+        new FilesScanner(scanDepth(), getScanPool(), false, 0, shardFilter).scan(this.path, (file, attrs) -> {
+            if (owns(file) && accept(file, attrs)) {
+                files.add(file);
+            }
+        });
+        return files.stream();
+    }
+
+    protected void refreshFiles() throws IOException {
+        final TaskScanEvent event = new TaskScanEvent();
+        event.begin();
+        final long started = startedTasks.get();
+        final long start = System.currentTimeMillis();
+        try {
+            if (getScanner().scan(this.path, this::refreshFile)) {
+                evictUnseen(start);
+            }
+        } finally {
+            this.lastScanTime = System.currentTimeMillis();
+            this.lastScanDuration = lastScanTime - start;
+            event.commit(getThreadNamePrefix(), this.path, startedTasks.get() - started);
+        }
+    }
+
+    /**
+     * A DISCOVERED file not seen by a full scan has been removed since it was seen, its state would stay forever.
+     * @param scanStart the start of the full scan
+     */
+    private void evictUnseen(final long scanStart) {
+        for (FileState state : currentFiles.values()) {
+            if (isUnseen(state, scanStart)) {
+                currentFiles.computeIfPresent(state.getFile(), (key, current) -> isUnseen(current, scanStart) ? null : current);
+            }
+        }
+    }
+
+    private static boolean isUnseen(final FileState state, final long scanStart) {
+        return state.getStatus() == FileState.Status.DISCOVERED && state.getSeenTime() < scanStart;
+    }
+
+    private void refreshFile(final Path file, final BasicFileAttributes attrs) {
+        if (owns(file) && accept(file, attrs)) {
+            startTask(file, attrs);
+        }
+    }
+
+    /**
+     * A file is dispatched once its last modification is older than this delay, until then it stays DISCOVERED.
+     * @return the delay in milliseconds, 0 to dispatch the files as soon as they are seen
+     */
+    protected long stableDelay() {
+        return 0;
+    }
+
+    /**
+     * Files are taken at any depth, directories only at the max depth : the upper directories are walked into.
+     * @return the max depth of the scan, 1 to only scan the entries of the directory
+     */
+    protected int scanDepth() {
+        return 1;
+    }
+
+    /**
+     * @return the number of threads walking into the sub directories, 1 to scan in the watch thread
+     */
+    protected int scanParallelism() {
+        return 1;
+    }
+
+    /**
+     * In incremental mode only the directories whose modification time or size has changed are listed,
+     * the files left in an unchanged directory after an exception are then picked up again by the next full scan.
+     * @return
+     */
+    protected boolean scanIncremental() {
+        return false;
+    }
+
+    /**
+     * @return the minimum delay in milliseconds between two full scans in incremental mode
+     */
+    protected long scanFullInterval() {
+        return 300000;
+    }
+
+    protected FilesScanner getScanner() {
+        final FilesScanner current = this.scanner;
+        return current != null ? current : createScanner();
+    }
+
+    private synchronized FilesScanner createScanner() {
+        if (this.scanner == null) {
+            this.scanner = new FilesScanner(scanDepth(), getScanPool(), scanIncremental(), scanFullInterval(), shardFilter);
+        }
+        return this.scanner;
+    }
+
+    private synchronized ForkJoinPool getScanPool() {
+        if (this.scanPool == null && scanParallelism() > 1 && scanDepth() > 1) {
+            final String name = getThreadNamePrefix() + "-scan-";
+            this.scanPool = new ForkJoinPool(scanParallelism(), pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return this.scanPool;
+    }
+
+    /**
+     * Process a large file by chunks aligned on its records in parallel, for the implementations of {@link #process(Path)}.
+     * @param <R>
+     * @param file
+     * @param processor
+     * @return the results of the chunks in the order of the file
+     * @throws IOException
+     */
+    protected <R> List<R> processChunks(final Path file, final ChunkProcessor<R> processor) throws IOException {
+        return getChunkedFileProcessor().process(file, processor);
+    }
+
+    /**
+     * Process a large file by chunks aligned on its records in parallel and merge their results in the order of the file.
+     * @param <R>
+     * @param file
+     * @param processor
+     * @param merger the merge of the results of two consecutive chunks
+     * @return the merged result or null for an empty file
+     * @throws IOException
+     */
+    protected <R> R processChunks(final Path file, final ChunkProcessor<R> processor, final BinaryOperator<R> merger) throws IOException {
+        return getChunkedFileProcessor().process(file, processor, merger);
+    }
+
+    /**
+     * @return the size in bytes of the chunks of {@link #processChunks(Path, ChunkProcessor)} before their alignment on the records
+     */
+    protected long chunkSize() {
+        return 64L * 1024 * 1024;
+    }
+
+    /**
+     * @return the number of threads processing the chunks, shared by the files processed at the same time
+     */
+    protected int chunkParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the delimiter of the records of the files processed by chunks
+     */
+    protected RecordDelimiter recordDelimiter() {
+        return RecordDelimiter.newLine();
     }
 
-    protected synchronized void refreshFiles() throws IOException {
-        try (Stream<Path> files = getStreamFiles()) {
-            files.forEach(this::startTask);
+    private synchronized ChunkedFileProcessor getChunkedFileProcessor() {
+        if (this.chunkedFileProcessor == null) {
+            final String name = getThreadNamePrefix() + "-chunk-";
+            this.chunkPool = new ForkJoinPool(chunkParallelism(), pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+            this.chunkedFileProcessor = new ChunkedFileProcessor(chunkPool, chunkSize(), recordDelimiter());
         }
+        return this.chunkedFileProcessor;
     }
 
     protected void startTask(final Path file) {
-        if (!currentFiles.add(file)) {
-            return;
+        startTask(file, null);
+    }
+
+    private void startTask(final Path file, final BasicFileAttributes attrs) {
+        startTask(file, attrs, isStable(attrs));
+    }
+
+    private void startTask(final Path file, final BasicFileAttributes attrs, final boolean stable) {
+        // the call is taken before the claim, a file stays DISCOVERED while the circuit is open or its probes are taken
+        final CircuitBreaker.State call = stable ? acquireCall() : null;
+        final boolean permitted = call != null;
+        final FileState[] previous = new FileState[1];
+        final FileState state = currentFiles.compute(file, (key, current) -> {
+            previous[0] = current;
+            if (current == null) {
+                return FileState.discovered(file, attrs, permitted);
+            }
+            if (current.getStatus() == FileState.Status.DISCOVERED && attrs != null) {
+                return permitted ? current.with(attrs).with(FileState.Status.STABLE) : current.with(attrs);
+            }
+            return current;
+        });
+        final boolean claimed = state.getStatus() == FileState.Status.STABLE
+                && (previous[0] == null || previous[0].getStatus() == FileState.Status.DISCOVERED);
+        if (!claimed) {
+            releaseCall(call);
+        }
+        if (claimed) {
+            startedTasks.incrementAndGet();
+            executeTask(file, attrs, call);
+        } else if (state.getStatus() == FileState.Status.DISCOVERED) {
+            // the directory must be listed again by an incremental scan
+            getScanner().invalidate(file.getParent());
+        }
+    }
+
+    private boolean isStable(final BasicFileAttributes attrs) {
+        return attrs == null || System.currentTimeMillis() - attrs.lastModifiedTime().toMillis() >= stableDelay();
+    }
+
+    /**
+     * @return a live view of the files taken and not yet done
+     */
+    public Map<Path, FileState> getFileStates() {
+        return Collections.unmodifiableMap(currentFiles);
+    }
+
+    /**
+     * @param file
+     * @return the state of the file or null if the file is not taken
+     */
+    public FileState getFileState(final Path file) {
+        return currentFiles.get(file);
+    }
+
+    /**
+     * The total latency is recorded for the completed files only.
+     * @return the distributions of the latencies of the files
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencies;
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest file taken and not yet done, 0 if there is none
+     */
+    public long getOldestPendingAge() {
+        long oldest = Long.MAX_VALUE;
+        for (FileState state : currentFiles.values()) {
+            oldest = Math.min(oldest, state.getArrivalTime());
         }
-        executeTask(file);
+        return oldest == Long.MAX_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
     }
 
-    private void executeTask(final Path file) {
+    @Override
+    public long getStartedTasks() {
+        return startedTasks.get();
+    }
+
+    @Override
+    public long getRetriedTasks() {
+        return retriedTasks.get();
+    }
+
+    @Override
+    public long getLastScanTime() {
+        return lastScanTime;
+    }
+
+    @Override
+    public long getLastScanDuration() {
+        return lastScanDuration;
+    }
+
+    @Override
+    public String getName() {
+        return getThreadNamePrefix();
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void pause() {
+        this.paused = true;
+    }
+
+    @Override
+    public void resume() {
+        this.paused = false;
+        this.rescan();
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public int getConcurrency() {
+        if (executor instanceof ThreadPoolTaskScheduler threadPoolTaskScheduler) {
+            return threadPoolTaskScheduler.getPoolSize();
+        } else if (executor instanceof ThreadPoolTaskExecutor threadPoolTaskExecutor) {
+            return threadPoolTaskExecutor.getMaxPoolSize();
+        } else if (executor instanceof ThreadPoolExecutor threadPoolExecutor) {
+            return threadPoolExecutor.getMaximumPoolSize();
+        }
+        return -1;
+    }
+
+    @Override
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be greater than 0");
+        }
+        if (executor instanceof ThreadPoolTaskScheduler threadPoolTaskScheduler) {
+            threadPoolTaskScheduler.setPoolSize(concurrency);
+        } else if (executor instanceof ThreadPoolTaskExecutor threadPoolTaskExecutor) {
+            // the order keeps the core size lower than the max size
+            if (concurrency > threadPoolTaskExecutor.getMaxPoolSize()) {
+                threadPoolTaskExecutor.setMaxPoolSize(concurrency);
+                threadPoolTaskExecutor.setCorePoolSize(concurrency);
+            } else {
+                threadPoolTaskExecutor.setCorePoolSize(concurrency);
+                threadPoolTaskExecutor.setMaxPoolSize(concurrency);
+            }
+        } else if (executor instanceof ThreadPoolExecutor threadPoolExecutor) {
+            if (concurrency > threadPoolExecutor.getMaximumPoolSize()) {
+                threadPoolExecutor.setMaximumPoolSize(concurrency);
+                threadPoolExecutor.setCorePoolSize(concurrency);
+            } else {
+                threadPoolExecutor.setCorePoolSize(concurrency);
+                threadPoolExecutor.setMaximumPoolSize(concurrency);
+            }
+        } else {
+            throw new UnsupportedOperationException("The executor can not be resized: " + executor.getClass().getName());
+        }
+        if (getLogger().isInfoEnabled()) {
+            getLogger().info("{} setConcurrency - {}", ClassUtils.getShortName(this.getClass()), concurrency);
+        }
+    }
+
+    /**
+     * @param file
+     * @param attrs
+     * @param call the state of the circuit which permitted the call taken for the file, null if not taken
+     */
+    private void executeTask(final Path file, final BasicFileAttributes attrs, final CircuitBreaker.State call) {
         if (shutdown) {
+            releaseCall(call);
+            return;
+        }
+        if (limiter != null) {
+            // the files wait for their tokens in the order of the dispatch, in the dispatcher of the task
+            getDispatcher().add(prioritizer != null ? rank(file, attrs) : 0, getSize(file), () -> dispatch(file, attrs, call), () -> releaseCall(call));
             return;
         }
-        executor.execute(() -> this.executeCommand(file));
+        dispatch(file, attrs, call);
+    }
+
+    private void dispatch(final Path file, final BasicFileAttributes attrs, final CircuitBreaker.State call) {
+        final TaskDispatchEvent event = new TaskDispatchEvent();
+        if (event.isEnabled()) {
+            event.commit(getThreadNamePrefix(), file, attrs != null ? attrs.size() : -1);
+        }
+        if (prioritizer == null) {
+            executor.execute(() -> this.executeCommand(file, call));
+            return;
+        }
+        pendingFiles.add(new PendingFile(file, rank(file, attrs), pendingSequence.getAndIncrement()));
+        // each command takes the first pending file when it runs, not the file it was submitted for
+        executor.execute(() -> this.executeNextTask(call));
+    }
+
+    private long rank(final Path file, final BasicFileAttributes attrs) {
+        final FileState state = currentFiles.get(file);
+        final long arrival = state != null ? state.getDiscoveredTime() : System.currentTimeMillis();
+        return arrival - priority(file, attrs) * priorityAgingDelay();
+    }
+
+    private void executeNextTask(final CircuitBreaker.State call) {
+        final PendingFile next = pendingFiles.poll();
+        if (next != null) {
+            executeCommand(next.file, call);
+        } else {
+            releaseCall(call);
+        }
+    }
+
+    private long priority(final Path file, final BasicFileAttributes attrs) {
+        try {
+            return prioritizer.priority(file, attrs != null ? attrs : Files.readAttributes(file, BasicFileAttributes.class));
+        } catch (IOException | RuntimeException e) {
+            getLogger().warn("{} priority - {} : {}", ClassUtils.getShortName(this.getClass()), file, e.toString());
+            return 0;
+        }
+    }
+
+    /**
+     * @return the prioritizer of the files, null to dispatch the files in the order of the scan
+     */
+    protected FilePrioritizer filePrioritizer() {
+        return null;
+    }
+
+    /**
+     * A file waiting for this delay goes before the files of the next priority found after it,
+     * so the files of low priority are not delayed indefinitely.
+     * @return the waiting time in milliseconds worth one level of priority
+     */
+    protected long priorityAgingDelay() {
+        return 60000;
+    }
+
+    @Override
+    public int getPendingTasks() {
+        int pending = 0;
+        for (FileState state : currentFiles.values()) {
+            if (state.getStatus() == FileState.Status.STABLE) {
+                pending++;
+            }
+        }
+        return pending;
     }
 
     private void retryTaskOnException(final Path file, final Exception e) {
@@ -121,35 +604,87 @@ abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable
         if (getLogger().isInfoEnabled()) {
             getLogger().info(String.format("%s retryTaskOnException - %s", ClassUtils.getShortName(this.getClass()), file), e);
         }
+        retriedTasks.incrementAndGet();
+        final TaskRetryEvent event = new TaskRetryEvent();
+        if (event.isEnabled()) {
+            final FileState state = currentFiles.get(file);
+            event.commit(getThreadNamePrefix(), file, state != null ? state.getAttempts() : 0, e);
+        }
         if (executor instanceof ThreadPoolTaskScheduler threadPoolTaskScheduler) {
-            threadPoolTaskScheduler.schedule(() -> this.executeCommand(file), Instant.now().plusMillis(retryDelayOnException));
+            threadPoolTaskScheduler.schedule(() -> this.executeTask(file, null, null), Instant.now().plusMillis(retryDelayOnException));
         } else {
             if (getLogger().isWarnEnabled()) {
                 getLogger().warn("{} retryTaskOnException is not delayed !", ClassUtils.getShortName(this.getClass()));
             }
-            executeTask(file);
+            executeTask(file, null, null);
         }
     }
 
-    private void executeCommand(final Path file) {
-        long time = System.currentTimeMillis();
+    /**
+     * @param file
+     * @param call the state of the circuit which permitted the call taken at the dispatch, null if not taken
+     */
+    private void executeCommand(final Path file, final CircuitBreaker.State call) {
+        if (shutdown) {
+            // not started before the stop, the file is kept in the claims
+            releaseCall(call);
+            return;
+        }
+        final long time = System.currentTimeMillis();
         if (getLogger().isInfoEnabled()) {
             getLogger().info("{} executeCommand - {}", ClassUtils.getShortName(this.getClass()), file);
         }
+        final FileState dispatched = currentFiles.get(file);
+        if (!transition(file, FileState.Status.RUNNING)) {
+            releaseCall(call);
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        if (dispatched != null && dispatched.getStatus() == FileState.Status.STABLE && dispatched.getAttempts() == 0) {
+            latencies.record(LatencyTracker.Stage.INBOX, dispatched.getDispatchTime() - dispatched.getArrivalTime());
+            latencies.record(LatencyTracker.Stage.QUEUE, start - dispatched.getDispatchTime());
+        }
+        final TaskProcessEvent event = new TaskProcessEvent();
+        event.begin();
+        // a call permitted by a closed circuit is checked again : the circuit may have opened while the file was queued
+        final CircuitBreaker.State taken = call == CircuitBreaker.State.HALF_OPEN ? call : acquireCall();
+        if (taken == null) {
+            commit(event, file, "blocked");
+            block(file);
+            return;
+        }
+        final RunningFile running = new RunningFile(file, dispatched, event, taken, time, start);
+        CompletableFuture<?> processing;
         try {
-            process(file);
-            afterTaskCompleted(file);
-            remove(file);
+            running.fingerprint = checkFingerprint(file);
+            processing = processAsync(file);
         } catch (Exception e) {
-            if (retryOnTaskException(file, e)) {
-                retryTaskOnException(file, e);
-            } else {
-                onTaskException(file, e);
-                remove(file);
-            }
+            processing = CompletableFuture.failedFuture(e);
+        } catch (Error e) {
+            // the call is given back and the file left to the next scan
+            releaseCall(taken);
+            remove(file);
+            throw e;
         }
-        if (getLogger().isInfoEnabled()) {
-            getLogger().info("{} executeCommand - {} process in {} ms", ClassUtils.getShortName(this.getClass()), file, System.currentTimeMillis() - time);
+        processing.whenComplete((result, failure) -> running.complete(failure));
+    }
+
+    /**
+     * Start the processing of the file, the file is completed or released when the future is done.
+     * By default, {@link #process(Path)} runs in the thread of the executor.
+     * @param file
+     * @return the future of the processing of the file
+     * @throws IOException
+     */
+    protected CompletableFuture<?> processAsync(final Path file) throws IOException {
+        process(file);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void commit(final TaskProcessEvent event, final Path file, final String outcome) {
+        if (event.shouldCommit()) {
+            final FileState state = currentFiles.get(file);
+            event.commit(getThreadNamePrefix(), file, state != null ? state.getSize() : -1, state != null ? state.getAttempts() : 0, outcome);
         }
     }
 
@@ -169,30 +704,280 @@ abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable
         }
     }
 
-    private synchronized boolean remove(final Path file) {
-        return currentFiles.remove(file);
+    /**
+     * The circuit is open : the file is left to the scan which takes it again once the circuit lets files through.
+     */
+    private void block(final Path file) {
+        if (getLogger().isInfoEnabled()) {
+            getLogger().info("{} executeCommand - {} blocked by the open circuit", ClassUtils.getShortName(this.getClass()), file);
+        }
+        currentFiles.computeIfPresent(file, (key, current) -> current.with(FileState.Status.DISCOVERED));
+        if (file.getParent() != null) {
+            getScanner().invalidate(file.getParent());
+        }
+    }
+
+    private long getSize(final Path file) {
+        final FileState state = currentFiles.get(file);
+        if (state != null && state.getSize() >= 0) {
+            return state.getSize();
+        }
+        try {
+            return Files.isRegularFile(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
     }
 
+    /**
+     * @return the name of the {@link TokenBucketRateLimiter} bean shared with other tasks, null for no limit
+     */
+    protected String rateLimiterName() {
+        return null;
+    }
+
+    /**
+     * @return the limiter of the files and bytes per second processed by the task, the bean {@link #rateLimiterName()} by default
+     */
+    protected TokenBucketRateLimiter rateLimiter() {
+        return rateLimiterName() != null && beanFactory != null ? beanFactory.getBean(rateLimiterName(), TokenBucketRateLimiter.class) : null;
+    }
+
+    /**
+     * @return the limiter of the task or null, its rates may be changed at runtime
+     */
+    public TokenBucketRateLimiter getRateLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return the notifier of the files written by the application in the directory of the task, the {@link StorageNotifier} bean by default
+     */
+    protected StorageNotifier storageNotifier() {
+        return beanFactory != null ? beanFactory.getBeanProvider(StorageNotifier.class).getIfAvailable() : null;
+    }
+
+    /**
+     * @return the usage of the directories of the storage updated by the moves and deletions of the task, the {@link StorageUsage} bean by default
+     */
+    protected StorageUsage storageUsage() {
+        return beanFactory != null ? beanFactory.getBeanProvider(StorageUsage.class).getIfAvailable() : null;
+    }
+
+    /**
+     * @return the usage of the directories of the storage or null
+     */
+    protected StorageUsage getStorageUsage() {
+        return usage;
+    }
+
+    /**
+     * A file written and closed by the application is dispatched at once, without waiting for the scan nor for {@link #stableDelay()}.
+     * @param stored the absolute path of the file
+     * @param attrs
+     */
+    private void fileStored(final Path stored, final BasicFileAttributes attrs) {
+        if (shutdown || !isActive()) {
+            // the scan takes it once the task is resumed
+            return;
+        }
+        final Path relative = this.path.toAbsolutePath().normalize().relativize(stored);
+        if (relative.getNameCount() > scanDepth()) {
+            return;
+        }
+        // the same key as the scan
+        final Path file = this.path.resolve(relative);
+        if (owns(file) && accept(file, attrs)) {
+            startTask(file, attrs, true);
+        }
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    private void recordFailure(final Exception e) {
+        if (breaker == null) {
+            return;
+        }
+        // a rejected or duplicated file is a failure of the file, not of the downstream service
+        if (e instanceof RejetException || e instanceof DoublonException) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+
+    /**
+     * @return the state of the circuit which permitted the call, CLOSED without circuit breaker, null if the call is rejected
+     */
+    private CircuitBreaker.State acquireCall() {
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.acquire();
+    }
+
+    private void releaseCall(final CircuitBreaker.State call) {
+        // only a probe call is counted by the circuit breaker
+        if (call == CircuitBreaker.State.HALF_OPEN) {
+            breaker.release();
+        }
+    }
+
+    /**
+     * @return the circuit breaker pausing the dispatch on a burst of failures, null to never pause
+     */
+    protected CircuitBreaker circuitBreaker() {
+        return null;
+    }
+
+    /**
+     * @return the circuit breaker of the task or null
+     */
+    protected CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * @return false to pause the scan of the directory
+     */
+    protected boolean active() {
+        return true;
+    }
+
+    /**
+     * @return true if the task is not paused, its circuit breaker lets the calls through and {@link #active()}
+     */
+    protected final boolean isActive() {
+        return !paused && (breaker == null || breaker.isCallPermitted()) && active();
+    }
+
+    private byte[] checkFingerprint(final Path file) throws IOException {
+        final FingerprintRegistry registry = getFingerprintRegistry();
+        if (registry == null || Files.isDirectory(file)) {
+            return null;
+        }
+        final byte[] fingerprint = FingerprintRegistry.fingerprint(file);
+        if (registry.contains(fingerprint)) {
+            throw new DoublonException("Content already processed: " + file.getFileName());
+        }
+        return fingerprint;
+    }
+
+    private void registerFingerprint(final Path file, final byte[] fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        try {
+            getFingerprintRegistry().register(fingerprint);
+        } catch (IOException e) {
+            getLogger().error(String.format("AbstractFilesBackgroundTask registerFingerprint - %s", file), e);
+        }
+    }
+
+    private boolean transition(final Path file, final FileState.Status status) {
+        final boolean[] done = new boolean[1];
+        currentFiles.computeIfPresent(file, (key, current) -> {
+            if (current.getStatus() == status || current.getStatus() == FileState.Status.DISCOVERED) {
+                return current;
+            }
+            done[0] = true;
+            return current.with(status);
+        });
+        return done[0];
+    }
+
+    private boolean remove(final Path file) {
+        return currentFiles.remove(file) != null;
+    }
+
+    /**
+     * The files accepted are also kept by the purge of the directory, whatever their shard.
+     * @param file
+     * @param attrs the attributes read by the scan
+     * @return
+     */
+    @SuppressWarnings("deprecation")
+    protected boolean accept(Path file, BasicFileAttributes attrs) {
+        return legacyAccept ? accept(file.getParent(), file.getFileName()) : pathFilter.accept(file, attrs);
+    }
+
+    /**
+     * @return true if a subclass still overrides the deprecated {@link #accept(Path, Path)}, the scan then keeps calling it
+     */
+    private boolean overridesLegacyAccept() {
+        for (Class<?> type = getClass(); type != AbstractFilesBackgroundTask.class; type = type.getSuperclass()) {
+            try {
+                type.getDeclaredMethod("accept", Path.class, Path.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // declared higher
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param file
+     * @return true if the file belongs to the shard of this instance
+     */
+    /**
+     * @param file
+     * @return false for the files of the other shards and the files being written by the storage service
+     */
+    private boolean owns(Path file) {
+        return !PathFilters.isStaging(file) && (shardFilter == null || shardFilter.test(file));
+    }
+
+    /**
+     * @return the shard of this instance, from 0 to {@link #shardCount()} - 1
+     */
+    protected int shardIndex() {
+        return 0;
+    }
+
+    /**
+     * Several instances scanning the same directory with the same count and different indexes share its files by the hash of their name.
+     * @return the number of instances, 1 to take all the files
+     */
+    protected int shardCount() {
+        return 1;
+    }
+
+    /**
+     * @deprecated the scan uses {@link #accept(Path, BasicFileAttributes)} which does not convert the entries to {@link File}, an override is still called by it
+     * @param directory
+     * @param filename
+     * @return
+     */
+    @Deprecated
     protected boolean accept(Path directory, Path filename) {
         return (filenameFilter == null && fileFilter == null) || (filenameFilter != null && filenameFilter.accept(directory.toFile(), filename.getFileName().toString())) || (fileFilter != null && fileFilter.accept(directory.resolve(filename).toFile()));
     }
 
+    @SuppressWarnings("deprecation")
     private boolean accept(Path file) {
-        return accept(file.getParent(), file.getFileName());
+        return owns(file) && accept(file.getParent(), file.getFileName());
     }
 
     protected abstract void startRegister() throws IOException;
 
-    private void start() throws IOException {
+    private void startThread() throws IOException {
         if (this.thread == null) {
             this.thread = new Thread(this);
             this.thread.setDaemon(true);
-            this.thread.setName(ClassUtils.getShortName(this.getClass()) + "-watch");
+            this.thread.setName(getThreadNamePrefix() + "-watch");
         }
         startRegister();
         thread.start();
     }
 
+    /**
+     * @return the prefix of the names of the threads of the task
+     */
+    protected String getThreadNamePrefix() {
+        return ClassUtils.getShortName(this.getClass());
+    }
+
     private boolean running() {
         return this.thread != null && this.thread.isAlive();
     }
@@ -205,11 +990,107 @@ abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable
         }
     }
 
+    /**
+     * The close of the context stops the discovery of new files, the files in progress are drained by {@link #stop(Runnable)}.
+     */
     @Override
     public void onApplicationEvent(ContextClosedEvent event) {
+        this.stopDiscovery();
+    }
+
+    private void stopDiscovery() {
         this.shutdown = true;
+        if (this.notifier != null) {
+            this.notifier.unregister(this.path, storageListener);
+        }
         this.stopRegister();
         this.stopThread();
+        if (this.scanPool != null) {
+            this.scanPool.shutdownNow();
+        }
+        getMaintenance().shutdownNow();
+        closeDispatcher();
+    }
+
+    /**
+     * The task is started by {@link #afterPropertiesSet()}.
+     */
+    @Override
+    public void start() {
+        // started with the bean
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !stopped.get();
+    }
+
+    @Override
+    public void stop() {
+        this.drain();
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        final Thread drainThread = new Thread(() -> {
+            try {
+                this.drain();
+            } finally {
+                callback.run();
+            }
+        }, getThreadNamePrefix() + "-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * The tasks are stopped in the first phase, before the web server and the beans they may depend on.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    /**
+     * The drain must end before <code>spring.lifecycle.timeout-per-shutdown-phase</code>.
+     * @return the maximum time in milliseconds to wait for the files in progress at the stop
+     */
+    protected long drainTimeout() {
+        return 20000;
+    }
+
+    /**
+     * @return the file where the files taken and not started are saved at the stop and resumed at the start, null to let the scan find them again
+     */
+    protected Path claimsFile() {
+        return null;
+    }
+
+    private void drain() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+        this.stopDiscovery();
+        final TaskDrain taskDrain = createDrain();
+        taskDrain.await(currentFiles.values(), drainTimeout());
+        taskDrain.saveClaims(currentFiles.values());
+        this.close();
+    }
+
+    private TaskDrain createDrain() {
+        return new TaskDrain(ClassUtils.getShortName(this.getClass()), claimsFile(), getLogger());
+    }
+
+    /**
+     * Release the resources of the task once the files in progress are done.
+     */
+    protected void close() {
+        synchronized (this) {
+            if (this.chunkPool != null) {
+                this.chunkPool.shutdown();
+            }
+        }
+        this.closeFingerprintRegistry();
         if (this.executor instanceof ExecutorConfigurationSupport) {
             ((ExecutorConfigurationSupport) (this.executor)).shutdown();
         } else if (this.executor instanceof ExecutorService) {
@@ -217,36 +1098,225 @@ abstract class AbstractFilesBackgroundTask implements InitializingBean, Runnable
         }
     }
 
+    /**
+     * @return the file of the registry of the contents already processed, null to process the duplicates
+     */
+    protected Path fingerprintRegistryFile() {
+        return null;
+    }
+
+    /**
+     * @return the number of contents expected in the registry
+     */
+    protected int fingerprintRegistryExpectedEntries() {
+        return 1000000;
+    }
+
+    protected synchronized FingerprintRegistry getFingerprintRegistry() throws IOException {
+        if (this.fingerprintRegistry == null && fingerprintRegistryFile() != null) {
+            this.fingerprintRegistry = new FingerprintRegistry(fingerprintRegistryFile(), fingerprintRegistryExpectedEntries());
+        }
+        return this.fingerprintRegistry;
+    }
+
+    private synchronized void closeFingerprintRegistry() {
+        if (this.fingerprintRegistry != null) {
+            try {
+                this.fingerprintRegistry.close();
+            } catch (IOException e) {
+                getLogger().error("AbstractFilesBackgroundTask closeFingerprintRegistry", e);
+            }
+        }
+    }
+
+    /**
+     * The purge runs at start, then every {@link #retentionInterval()} if it is set.
+     * @return true to delete the files of the directory not accepted and older than {@link #purgeMaxAge()}
+     */
     protected boolean purgeBeforeStart() {
         return true;
     }
 
+    /**
+     * @return the maximum age in milliseconds of the files not accepted in the directory
+     */
+    protected long purgeMaxAge() {
+        return 86400000;
+    }
+
+    /**
+     * The retention policies, including the purge of the directory, run once at start by default.
+     * @return the delay in milliseconds between two passes of the retention policies, 0 to only run them at start
+     */
+    protected long retentionInterval() {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of deletions per second of the retention policies, 0 for no limit
+     */
+    protected int retentionOperationsPerSecond() {
+        return 200;
+    }
+
+    /**
+     * @return the retention policies applied at start, then every {@link #retentionInterval()} if it is set
+     */
+    protected List<RetentionPolicy> retentionPolicies() {
+        final List<RetentionPolicy> policies = new ArrayList<>(3);
+        if (purgeBeforeStart()) {
+            policies.add(new RetentionPolicy(this.path, false, scanDepth(), purgeMaxAge(), -1, -1, this::accept));
+        }
+        return policies;
+    }
+
+    protected synchronized RetentionEngine getRetentionEngine() {
+        if (this.retentionEngine == null) {
+            this.retentionEngine = new RetentionEngine(retentionPolicies(), retentionOperationsPerSecond());
+            this.retentionEngine.setUsage(usage);
+        }
+        return this.retentionEngine;
+    }
+
+    /**
+     * Run the command in the maintenance thread of the task, an exception does not cancel the next executions.
+     * @param command
+     * @param initialDelay
+     * @param period the delay between two executions, 0 to run the command once
+     */
+    protected void scheduleMaintenance(Runnable command, long initialDelay, long period) {
+        getMaintenance().schedule(command, initialDelay, period);
+    }
+
+    synchronized TaskMaintenance getMaintenance() {
+        if (this.maintenance == null) {
+            this.maintenance = new TaskMaintenance(getThreadNamePrefix() + "-maintenance", getLogger());
+        }
+        return this.maintenance;
+    }
+
+    private synchronized TaskDispatcher getDispatcher() {
+        if (this.dispatcher == null) {
+            this.dispatcher = new TaskDispatcher(getThreadNamePrefix() + "-dispatch", limiter, getLogger());
+        }
+        return this.dispatcher;
+    }
+
+    private synchronized void closeDispatcher() {
+        if (this.dispatcher != null) {
+            // the files not dispatched stay taken, they are kept in the claims by the drain
+            this.dispatcher.close();
+        }
+    }
+
     protected void purge() {
-        try (Stream<Path> walk = Files.walk(this.path, 1)) {
-            long maxTime = System.currentTimeMillis() - 86400000;
-            walk.skip(1).filter(pathToFilter -> {
-                try {
-                    return !accept(pathToFilter) && Files.getLastModifiedTime(pathToFilter).toMillis() < maxTime;
-                } catch (IOException e) {
-                    if (getLogger().isWarnEnabled()) {
-                        getLogger().warn(String.format("AbstractFilesBackgroundTask purge accept - %s", pathToFilter), e);
-                    }
+        getRetentionEngine().run();
+    }
+
+    /**
+     * File in process, completed by the thread which ends its processing.
+     */
+    private final class RunningFile {
+
+        private final Path file;
+        private final FileState dispatched;
+        private final TaskProcessEvent event;
+        private final CircuitBreaker.State call;
+        private final long time;
+        private final long start;
+        private byte[] fingerprint;
+
+        private RunningFile(Path file, FileState dispatched, TaskProcessEvent event, CircuitBreaker.State call, long time, long start) {
+            this.file = file;
+            this.dispatched = dispatched;
+            this.event = event;
+            this.call = call;
+            this.time = time;
+            this.start = start;
+        }
+
+        private void complete(final Throwable thrown) {
+            final Throwable failure = thrown instanceof CompletionException && thrown.getCause() != null ? thrown.getCause() : thrown;
+            boolean processed = false;
+            boolean recorded = false;
+            boolean ended = false;
+            try {
+                if (failure instanceof Error error) {
+                    throw error;
                 }
-                return false;
-            }).forEach(t -> {
-                try {
-                    FileSystemUtils.deleteRecursively(t);
-                } catch (IOException e) {
-                    if (getLogger().isWarnEnabled()) {
-                        getLogger().warn(String.format("AbstractFilesBackgroundTask purge delete - %s", path), e);
-                    }
+                if (failure != null) {
+                    throw (Exception) failure;
                 }
-            });
-        } catch (IOException e) {
-            if (getLogger().isWarnEnabled()) {
-                getLogger().warn(String.format("AbstractFilesBackgroundTask purge - %s", path), e);
+                processed = true;
+                final long processEnd = System.currentTimeMillis();
+                latencies.record(LatencyTracker.Stage.PROCESS, processEnd - start);
+                if (breaker != null) {
+                    breaker.onSuccess();
+                }
+                recorded = true;
+                registerFingerprint(file, fingerprint);
+                afterTaskCompleted(file);
+                commit(event, file, "completed");
+                final long end = System.currentTimeMillis();
+                latencies.record(LatencyTracker.Stage.ARCHIVE, end - processEnd);
+                if (dispatched != null) {
+                    latencies.record(LatencyTracker.Stage.TOTAL, end - dispatched.getArrivalTime());
+                }
+                remove(file);
+                ended = true;
+            } catch (Exception e) {
+                if (!processed) {
+                    latencies.record(LatencyTracker.Stage.PROCESS, System.currentTimeMillis() - start);
+                    recordFailure(e);
+                    recorded = true;
+                }
+                if (retryOnTaskException(file, e)) {
+                    commit(event, file, "retry");
+                    transition(file, FileState.Status.RETRYING);
+                    retryTaskOnException(file, e);
+                } else {
+                    onTaskException(file, e);
+                    commit(event, file, "exception");
+                    remove(file);
+                }
+                ended = true;
+            } catch (Error e) {
+                // not thrown in the thread which completes the future
+                getLogger().error(String.format("AbstractFilesBackgroundTask complete - %s", file), e);
+            } finally {
+                // an Error gives the call back and leaves the file to the next scan
+                if (!recorded) {
+                    releaseCall(call);
+                }
+                if (!ended) {
+                    remove(file);
+                }
+            }
+            if (getLogger().isInfoEnabled()) {
+                getLogger().info("{} executeCommand - {} process in {} ms", ClassUtils.getShortName(AbstractFilesBackgroundTask.this.getClass()), file, System.currentTimeMillis() - time);
             }
         }
+
+    }
+
+    private static final class PendingFile implements Comparable<PendingFile> {
+
+        private final Path file;
+        private final long rank;
+        private final long sequence;
+
+        private PendingFile(Path file, long rank, long sequence) {
+            this.file = file;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PendingFile other) {
+            final int compare = Long.compare(rank, other.rank);
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+
     }
 
 }
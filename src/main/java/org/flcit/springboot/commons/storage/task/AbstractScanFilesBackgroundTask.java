@@ -21,8 +21,8 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.concurrent.Executor;
-
-import org.flcit.commons.core.util.ThreadUtils;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /*
  * Pour les tâches sur un répertoire cifs
@@ -34,9 +34,12 @@ import org.flcit.commons.core.util.ThreadUtils;
  */
 abstract class AbstractScanFilesBackgroundTask extends AbstractFilesBackgroundTask {
 
-    private static final long NORMAL_SLEEP = 3000;
+    private static final long MIN_SCAN_DELAY = 500;
+    private static final long MAX_SCAN_DELAY = 30000;
     private static final long EXCEPTION_SLEEP = 15000;
 
+    private final Semaphore rescan = new Semaphore(0);
+
     protected AbstractScanFilesBackgroundTask(Path path, FilenameFilter filenameFilter, Executor executor) {
         super(path, filenameFilter, executor);
     }
@@ -47,15 +50,18 @@ abstract class AbstractScanFilesBackgroundTask extends AbstractFilesBackgroundTa
 
     @Override
     public void run() {
+        long delay = minScanDelay();
         while (true) {
             try {
-                if (active()) {
+                if (isActive()) {
+                    final long started = getStartedTasks();
                     this.refreshFiles();
+                    delay = started != getStartedTasks() ? minScanDelay() : Math.min(delay * 2, maxScanDelay());
                 }
-                ThreadUtils.sleep(NORMAL_SLEEP);
+                await(delay);
             } catch (Exception e) {
                 getLogger().error("AbstractScanFilesBackgroundTask run", e);
-                ThreadUtils.sleep(EXCEPTION_SLEEP);
+                await(EXCEPTION_SLEEP);
             }
             if (Thread.interrupted()) {
                 return;
@@ -63,14 +69,44 @@ abstract class AbstractScanFilesBackgroundTask extends AbstractFilesBackgroundTa
         }
     }
 
+    private void await(long delay) {
+        try {
+            if (rescan.tryAcquire(delay, TimeUnit.MILLISECONDS)) {
+                rescan.drainPermits();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wake up the watch thread to scan immediately.
+     */
+    @Override
+    public void rescan() {
+        rescan.release();
+    }
+
+    /**
+     * @return the delay in milliseconds between two scans when the last scan has found new files
+     */
+    protected long minScanDelay() {
+        return MIN_SCAN_DELAY;
+    }
+
+    /**
+     * The delay is doubled after each scan without new file until this value, 30 seconds by default,
+     * the files stored by the application are dispatched without waiting for the scan and {@link #rescan()} wakes the thread up.
+     * @return the maximum delay in milliseconds between two scans
+     */
+    protected long maxScanDelay() {
+        return MAX_SCAN_DELAY;
+    }
+
     @Override
     protected void startRegister() throws IOException { }
 
     @Override
     protected void stopRegister() { }
 
-    protected boolean active() {
-        return true;
-    }
-
 }
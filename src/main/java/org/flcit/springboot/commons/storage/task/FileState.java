@@ -0,0 +1,167 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Immutable state of a file taken by a background task.
+ * <p>
+ * DISCOVERED -&gt; STABLE -&gt; RUNNING -&gt; (RETRYING -&gt; RUNNING)*,
+ * the state of a file is removed from the task once it is done.
+ * A file blocked by an open circuit breaker goes back from RUNNING to DISCOVERED.
+ * A DISCOVERED file missed by a full scan has been removed and its state is dropped.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class FileState {
+
+    /**
+     * 
+     * @since 
+     * @author Florian Lestic
+     */
+    public enum Status {
+        /** Seen by a scan but still being written, or blocked by an open circuit breaker */
+        DISCOVERED,
+        /** Waiting for a thread of the executor */
+        STABLE,
+        RUNNING,
+        /** Waiting for a new attempt after an exception */
+        RETRYING
+    }
+
+    private final Path file;
+    private final Status status;
+    private final long discoveredTime;
+    private final long arrivalTime;
+    private final long dispatchTime;
+    private final long statusTime;
+    private final long seenTime;
+    private final long lastModified;
+    private final long size;
+    private final int attempts;
+
+    private FileState(Path file, Status status, long discoveredTime, long arrivalTime, long dispatchTime, long seenTime, long lastModified, long size, int attempts) {
+        this.file = file;
+        this.status = status;
+        this.discoveredTime = discoveredTime;
+        this.arrivalTime = arrivalTime;
+        this.statusTime = System.currentTimeMillis();
+        this.seenTime = seenTime > 0 ? seenTime : statusTime;
+        this.dispatchTime = status == Status.STABLE && dispatchTime == 0 ? statusTime : dispatchTime;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.attempts = attempts;
+    }
+
+    static FileState discovered(Path file, BasicFileAttributes attrs, boolean stable) {
+        final long now = System.currentTimeMillis();
+        // the creation time is not supported by all the file systems, it is then the epoch or the last modified time
+        final long created = attrs != null ? attrs.creationTime().toMillis() : 0;
+        return new FileState(file, stable ? Status.STABLE : Status.DISCOVERED, now, created > 0 ? Math.min(created, now) : now, 0, now,
+                attrs != null ? attrs.lastModifiedTime().toMillis() : now,
+                attrs != null ? attrs.size() : -1, 0);
+    }
+
+    FileState with(Status newStatus) {
+        return new FileState(file, newStatus, discoveredTime, arrivalTime, newStatus == Status.DISCOVERED ? 0 : dispatchTime, seenTime, lastModified, size,
+                newStatus == Status.RUNNING ? attempts + 1 : attempts);
+    }
+
+    FileState with(BasicFileAttributes attrs) {
+        return new FileState(file, status, discoveredTime, arrivalTime, dispatchTime, 0, attrs.lastModifiedTime().toMillis(), attrs.size(), attempts);
+    }
+
+    /**
+     * @return
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the time in milliseconds when the file has been seen for the first time
+     */
+    public long getDiscoveredTime() {
+        return discoveredTime;
+    }
+
+    /**
+     * @return the creation time in milliseconds of the file, or the time it has been seen for the first time if it is not known
+     */
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    /**
+     * @return the time in milliseconds when the file has been submitted to the executor, 0 if not yet
+     */
+    public long getDispatchTime() {
+        return dispatchTime;
+    }
+
+    /**
+     * @return the time in milliseconds of the last change of status
+     */
+    public long getStatusTime() {
+        return statusTime;
+    }
+
+    /**
+     * @return the time in milliseconds when the file has been seen for the last time by a scan
+     */
+    public long getSeenTime() {
+        return seenTime;
+    }
+
+    /**
+     * @return the last modified time in milliseconds observed by the scan
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the size observed by the scan, -1 if unknown
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of executions started
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return file + " " + status + " (" + attempts + ")";
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.flcit.springboot.commons.storage.latency.LatencyTracker;
+
+/**
+ * Introspection and control of a files background task.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public interface FilesBackgroundTask {
+
+    /**
+     * @return the name of the task
+     */
+    String getName();
+
+    /**
+     * @return the scanned directory
+     */
+    Path getPath();
+
+    /**
+     * @return a live view of the files taken and not yet done
+     */
+    Map<Path, FileState> getFileStates();
+
+    /**
+     * @return the number of files waiting for a thread of the executor
+     */
+    int getPendingTasks();
+
+    /**
+     * @return the number of files taken since the start
+     */
+    long getStartedTasks();
+
+    /**
+     * @return the number of retries since the start
+     */
+    long getRetriedTasks();
+
+    /**
+     * @return the time in milliseconds of the end of the last scan, 0 before the first scan
+     */
+    long getLastScanTime();
+
+    /**
+     * @return the duration in milliseconds of the last scan
+     */
+    long getLastScanDuration();
+
+    /**
+     * @return the age in milliseconds of the oldest file taken and not yet done, 0 if there is none
+     */
+    long getOldestPendingAge();
+
+    /**
+     * @return the distributions of the latencies of the files
+     */
+    LatencyTracker getLatencyTracker();
+
+    /**
+     * Stop taking new files, the files already taken are processed.
+     */
+    void pause();
+
+    /**
+     * Take new files again.
+     */
+    void resume();
+
+    /**
+     * @return
+     */
+    boolean isPaused();
+
+    /**
+     * Scan the directory immediately.
+     */
+    void rescan();
+
+    /**
+     * @return the number of threads of the executor, -1 if it is not known
+     */
+    int getConcurrency();
+
+    /**
+     * @param concurrency the number of threads of the executor
+     * @throws UnsupportedOperationException if the executor can not be resized
+     */
+    void setConcurrency(int concurrency);
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.flcit.springboot.commons.storage.exception.StorageException;
+import org.flcit.springboot.commons.storage.pipeline.Pipeline;
+import org.flcit.springboot.commons.storage.pipeline.StageMetrics;
+
+/**
+ * Task processing the files through the stages of a {@link Pipeline}.
+ * <p>
+ * The thread of the executor only submits the file to the first stage, waiting while its queue is full,
+ * and the file is completed or released by the thread of the last stage. The threads of each stage are sized by {@link #createPipeline()}.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public abstract class PipelineFilesBackgroundTask extends SimpleFilesBackgroundTask {
+
+    private Pipeline pipeline;
+
+    protected PipelineFilesBackgroundTask(Path path, FilenameFilter filenameFilter, Executor executor) {
+        super(path, filenameFilter, executor);
+    }
+
+    protected PipelineFilesBackgroundTask(Path path, FileFilter fileFilter, Executor executor) {
+        super(path, fileFilter, executor);
+    }
+
+    protected PipelineFilesBackgroundTask(Path path, FilenameFilter filenameFilter, Executor executor, Path targetDirectoryOnCompleted, Path targetDirectoryOnException, Path targetDirectoryOnDoublonException) {
+        super(path, filenameFilter, executor, targetDirectoryOnCompleted, targetDirectoryOnException, targetDirectoryOnDoublonException);
+    }
+
+    protected PipelineFilesBackgroundTask(Path path, FileFilter fileFilter, Executor executor, Path targetDirectoryOnCompleted, Path targetDirectoryOnException, Path targetDirectoryOnDoublonException) {
+        super(path, fileFilter, executor, targetDirectoryOnCompleted, targetDirectoryOnException, targetDirectoryOnDoublonException);
+    }
+
+    /**
+     * The first stage receives the {@link Path} of the file.
+     * 
+     * @return the pipeline of the task
+     */
+    protected abstract Pipeline createPipeline();
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        synchronized (this) {
+            this.pipeline = createPipeline();
+        }
+        super.afterPropertiesSet();
+    }
+
+    @Override
+    protected final CompletableFuture<?> processAsync(final Path file) {
+        return getPipeline().submit(file);
+    }
+
+    /**
+     * The task submits the files with {@link #processAsync(Path)}, this method waits for the file to leave the pipeline.
+     */
+    @Override
+    protected final void process(final Path file) throws IOException {
+        try {
+            getPipeline().submit(file).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("PipelineFilesBackgroundTask process interrupted - " + file, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new StorageException("PipelineFilesBackgroundTask process - " + file, cause);
+        }
+    }
+
+    protected synchronized Pipeline getPipeline() {
+        return this.pipeline;
+    }
+
+    /**
+     * @return the metrics of the stages of the pipeline
+     */
+    public List<StageMetrics> getPipelineMetrics() {
+        final Pipeline current = getPipeline();
+        return current == null ? Collections.emptyList() : current.getMetrics();
+    }
+
+    @Override
+    protected void close() {
+        super.close();
+        final Pipeline current = getPipeline();
+        if (current != null) {
+            current.close();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.flcit.springboot.commons.storage.configuration.TaskProperties;
+import org.flcit.springboot.commons.storage.filter.CompiledPathFilter;
+import org.flcit.springboot.commons.storage.filter.PathFilter;
+import org.flcit.springboot.commons.storage.filter.PathFilters;
+
+/**
+ * Task declared in the properties <code>storage.tasks.&lt;name&gt;</code>, the files are given to a {@link FileProcessor} bean.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class PropertiesFilesBackgroundTask extends SimpleFilesBackgroundTask {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PropertiesFilesBackgroundTask.class);
+
+    private final String name;
+    private final TaskProperties properties;
+    private final FileProcessor processor;
+    private final Path claimsFile;
+
+    /**
+     * @param name the name of the task in the properties
+     * @param properties
+     * @param location the root of the relative paths of the properties
+     * @param executor
+     * @param processor
+     */
+    public PropertiesFilesBackgroundTask(String name, TaskProperties properties, Path location, Executor executor, FileProcessor processor) {
+        super(TaskProperties.resolve(location, properties.getPath()), getFilter(properties), executor,
+                properties.isDeleteOnCompleted(), properties.isArchive(), TaskProperties.resolve(location, properties.getCompletedDirectory()), properties.isCheckFileExistsOnCompleted(),
+                properties.isDeleteOnException(), TaskProperties.resolve(location, properties.getExceptionDirectory()), TaskProperties.resolve(location, properties.getDoublonDirectory()));
+        this.name = name;
+        this.properties = properties;
+        this.processor = processor;
+        this.claimsFile = TaskProperties.resolve(location, properties.getClaimsFile());
+    }
+
+    private static CompiledPathFilter getFilter(TaskProperties properties) {
+        final List<PathFilter> filters = new ArrayList<>(4);
+        filters.add(PathFilters.notTemp());
+        if (properties.getSuffixes() != null && properties.getSuffixes().length > 0) {
+            filters.add(PathFilters.suffixes(properties.getSuffixes()));
+        }
+        if (properties.getGlob() != null) {
+            filters.add(PathFilters.glob(properties.getGlob()));
+        }
+        if (properties.getRegex() != null) {
+            filters.add(PathFilters.regex(properties.getRegex()));
+        }
+        return PathFilters.compile(filters.toArray(new PathFilter[filters.size()]));
+    }
+
+    /**
+     * @return the name of the task in the properties
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    protected String getThreadNamePrefix() {
+        return name;
+    }
+
+    @Override
+    protected void process(Path file) throws IOException {
+        processor.process(file);
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    protected int scanDepth() {
+        return properties.getDepth();
+    }
+
+    @Override
+    protected long stableDelay() {
+        return properties.getStableDelay();
+    }
+
+    @Override
+    protected long maxScanDelay() {
+        return properties.getMaxScanDelay();
+    }
+
+    @Override
+    protected String rateLimiterName() {
+        return properties.getRateLimiter();
+    }
+
+    @Override
+    protected long drainTimeout() {
+        return properties.getDrainTimeout();
+    }
+
+    @Override
+    protected Path claimsFile() {
+        return claimsFile;
+    }
+
+}
@@ -16,23 +16,32 @@
 
 package org.flcit.springboot.commons.storage.task;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import org.springframework.util.FileSystemUtils;
 
 import org.flcit.commons.core.file.util.FileUtils;
 import org.flcit.commons.core.util.ClassUtils;
 import org.flcit.commons.core.util.ReflectionUtils;
+import org.flcit.springboot.commons.storage.archive.ArchiveCompactor;
 import org.flcit.springboot.commons.storage.exception.DoublonException;
 import org.flcit.springboot.commons.storage.exception.RejetException;
+import org.flcit.springboot.commons.storage.journal.ErrorRecord;
+import org.flcit.springboot.commons.storage.retention.RetentionPolicy;
+import org.flcit.springboot.commons.storage.usage.StorageUsage;
+import org.flcit.springboot.commons.storage.util.FileMoveUtils;
 
 /**
  * 
@@ -48,6 +57,8 @@ public abstract class SimpleFilesBackgroundTask extends AbstractScanFilesBackgro
     private final Path targetDirectoryOnException;
     private final boolean checkFileExistsOnCompleted;
     private final Path targetDirectoryOnDoublonException;
+    private TaskErrorJournal errorJournal;
+    private ForkJoinPool movePool;
     private Integer year;
     private Integer month;
     private Integer day;
@@ -206,6 +217,84 @@ public abstract class SimpleFilesBackgroundTask extends AbstractScanFilesBackgro
         this.targetDirectoryOnDoublonException = null;
     }
 
+    protected SimpleFilesBackgroundTask(Path path, FileFilter fileFilter, Executor executor, boolean deleteFileOnCompleted, boolean archivageOnCompleted, Path targetDirectoryOnCompleted, boolean checkFileExistsOnCompleted, boolean deleteFileOnException, Path targetDirectoryOnException, Path targetDirectoryOnDoublonException) {
+        super(path, fileFilter, executor);
+        this.deleteFileOnCompleted = deleteFileOnCompleted;
+        this.deleteFileOnException = deleteFileOnException;
+        this.archivageOnCompleted = archivageOnCompleted;
+        this.targetDirectoryOnCompleted = targetDirectoryOnCompleted;
+        this.checkFileExistsOnCompleted = checkFileExistsOnCompleted;
+        this.targetDirectoryOnException = targetDirectoryOnException;
+        this.targetDirectoryOnDoublonException = targetDirectoryOnDoublonException;
+    }
+
+    /**
+     * @return the maximum age in milliseconds of the archived files, -1 to keep them
+     */
+    protected long archiveMaxAge() {
+        return -1;
+    }
+
+    /**
+     * @return the maximum total size in bytes of the archived files, -1 for no limit
+     */
+    protected long archiveMaxTotalSize() {
+        return -1;
+    }
+
+    /**
+     * @return the maximum number of archived files, -1 for no limit
+     */
+    protected int archiveMaxCount() {
+        return -1;
+    }
+
+    /**
+     * @return the maximum age in milliseconds of the files in the exception and doublon directories, -1 to keep them
+     */
+    protected long rejectMaxAge() {
+        return -1;
+    }
+
+    /**
+     * The files of the closed day directories of the archive are rolled into ZIP segments,
+     * they can be read with {@link org.flcit.springboot.commons.storage.service.ArchiveStorageService}.
+     * @return true to compact the archive at start, then every {@link #retentionInterval()} if it is set
+     */
+    protected boolean compactArchive() {
+        return false;
+    }
+
+    /**
+     * @return the size in bytes of the archived files from which a new segment is started
+     */
+    protected long archiveSegmentMaxSize() {
+        return 1073741824;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        if (compactArchive() && archivageOnCompleted && targetDirectoryOnCompleted != null) {
+            scheduleMaintenance(new ArchiveCompactor(targetDirectoryOnCompleted, archiveSegmentMaxSize()), 0, retentionInterval());
+        }
+    }
+
+    @Override
+    protected List<RetentionPolicy> retentionPolicies() {
+        final List<RetentionPolicy> policies = super.retentionPolicies();
+        if (targetDirectoryOnCompleted != null) {
+            policies.add(new RetentionPolicy(targetDirectoryOnCompleted, archivageOnCompleted, archiveMaxAge(), archiveMaxTotalSize(), archiveMaxCount()));
+        }
+        if (targetDirectoryOnException != null) {
+            policies.add(new RetentionPolicy(targetDirectoryOnException, false, rejectMaxAge(), -1, -1));
+        }
+        if (targetDirectoryOnDoublonException != null && !targetDirectoryOnDoublonException.equals(targetDirectoryOnException)) {
+            policies.add(new RetentionPolicy(targetDirectoryOnDoublonException, false, rejectMaxAge(), -1, -1));
+        }
+        return policies;
+    }
+
     @Override
     protected void onTaskException(final Path file, Exception e) {
         super.onTaskException(file, e);
@@ -214,29 +303,117 @@ public abstract class SimpleFilesBackgroundTask extends AbstractScanFilesBackgro
         } else {
             Path target = moveOrDelete(file, deleteFileOnException, e instanceof RejetException rejetException && rejetException.getTargetDirectory() != null ? ((RejetException) e).getTargetDirectory() : targetDirectoryOnException);
             if (target != null) {
-                writeErrorFile(target, e);
+                if (errorJournalDirectory() != null) {
+                    appendErrorJournal(target, e);
+                } else {
+                    writeErrorFile(target, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the directory of the error journal of the task, null to write an error file next to each rejected file
+     */
+    protected Path errorJournalDirectory() {
+        return null;
+    }
+
+    /**
+     * @return the size in bytes from which a new segment of the error journal is started
+     */
+    protected long errorJournalSegmentSize() {
+        return 67108864;
+    }
+
+    /**
+     * @return the number of segments of the error journal kept
+     */
+    protected int errorJournalSegments() {
+        return 10;
+    }
+
+    private synchronized TaskErrorJournal getErrorJournal() {
+        if (this.errorJournal == null) {
+            this.errorJournal = new TaskErrorJournal(errorJournalDirectory(), errorJournalSegmentSize(), errorJournalSegments(), getThreadNamePrefix() + "-journal", getLogger());
+        }
+        return this.errorJournal;
+    }
+
+    /**
+     * @param rejectedFile the file moved in the exception directory
+     * @return the error of the file or null
+     * @throws IOException
+     */
+    public ErrorRecord findError(Path rejectedFile) throws IOException {
+        if (errorJournalDirectory() != null) {
+            return getErrorJournal().find(rejectedFile);
+        }
+        final Path errorFile = getErrorFile(rejectedFile);
+        if (!Files.exists(errorFile)) {
+            return null;
+        }
+        return new ErrorRecord(Files.getLastModifiedTime(errorFile).toMillis(), rejectedFile.toString(), Files.readString(errorFile));
+    }
+
+    private void appendErrorJournal(Path target, Exception e) {
+        if (e == null) {
+            return;
+        }
+        try {
+            final ByteArrayOutputStream error = new ByteArrayOutputStream(4096);
+            try (PrintStream ps = new PrintStream(error, false, StandardCharsets.UTF_8)) {
+                printError(ps, e);
             }
+            getErrorJournal().append(target, error.toByteArray());
+        } catch (IOException ioe) {
+            getLogger().error("SimpleFilesBackgroundTask appendErrorJournal - " + target, ioe);
         }
     }
 
+    private static Path getErrorFile(Path target) {
+        return Files.isDirectory(target) ? target.resolve("error.log") : FileUtils.setExtension(target, "_error.log");
+    }
+
     private void writeErrorFile(Path target, Exception e) {
         if (target == null || e == null) {
             return;
         }
-        Path errorFile = Files.isDirectory(target) ? target.resolve("error.log") : FileUtils.setExtension(target, "_error.log");
+        Path errorFile = getErrorFile(target);
         getLogger().info("SimpleFilesBackgroundTask writeErrorFile - {}", errorFile);
         try (PrintStream ps = new PrintStream(errorFile.toFile())) {
-            if (ClassUtils.safeIsAssignableFrom("org.springframework.web.client.RestClientResponseException", e.getClass())) {
-                ps.println("Response body :");
-                ps.write((byte[]) ReflectionUtils.getSafeMethodValue(e, "getResponseBodyAsByteArray"));
-                ps.println();
-            }
-            e.printStackTrace(ps);
+            printError(ps, e);
         } catch (IOException ioe) {
             getLogger().error("SimpleFilesBackgroundTask writeErrorFile - " + errorFile, ioe);
         }
     }
 
+    private static void printError(PrintStream ps, Exception e) throws IOException {
+        if (ClassUtils.safeIsAssignableFrom("org.springframework.web.client.RestClientResponseException", e.getClass())) {
+            ps.println("Response body :");
+            ps.write((byte[]) ReflectionUtils.getSafeMethodValue(e, "getResponseBodyAsByteArray"));
+            ps.println();
+        }
+        e.printStackTrace(ps);
+    }
+
+    @Override
+    protected void close() {
+        super.close();
+        synchronized (this) {
+            if (this.errorJournal != null) {
+                try {
+                    this.errorJournal.close();
+                } catch (IOException e) {
+                    getLogger().error("SimpleFilesBackgroundTask close errorJournal", e);
+                }
+            }
+            if (this.movePool != null) {
+                this.movePool.shutdown();
+            }
+        }
+    }
+
     @Override
     protected void afterTaskCompleted(final Path file) {
         moveOrDelete(file, deleteFileOnCompleted, getPathArchivage(targetDirectoryOnCompleted, archivageOnCompleted));
@@ -281,6 +458,33 @@ public abstract class SimpleFilesBackgroundTask extends AbstractScanFilesBackgro
         return currentPath;
     }
 
+    /**
+     * A move to another file store is a copy verified before the deletion of the source.
+     * @return true to compare the checksums of the source and of the copy, false to only compare their sizes
+     */
+    protected boolean verifyMoveChecksum() {
+        return true;
+    }
+
+    /**
+     * @return the number of threads moving the files of a directory to another file store, 1 to move them in the thread of the task
+     */
+    protected int moveParallelism() {
+        return 1;
+    }
+
+    private synchronized ForkJoinPool getMovePool() {
+        if (this.movePool == null && moveParallelism() > 1) {
+            final String name = getThreadNamePrefix() + "-move-";
+            this.movePool = new ForkJoinPool(moveParallelism(), pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return this.movePool;
+    }
+
     private Path moveOrDelete(final Path file, boolean delete, Path target) {
         if (target != null) {
             return move(file, target);
@@ -293,12 +497,13 @@ public abstract class SimpleFilesBackgroundTask extends AbstractScanFilesBackgro
     private Path move(final Path file, Path target) {
         try {
             Path dest = target.resolve(file.getFileName());
-            if (Files.isDirectory(file)) {
-                FileUtils.moveDirectory(file, dest);
-                return dest;
-            } else if (!checkFileExistsOnCompleted || Files.exists(file)) {
-                Files.move(file, dest, StandardCopyOption.REPLACE_EXISTING);
-                return dest;
+            if (Files.isDirectory(file) || !checkFileExistsOnCompleted || Files.exists(file)) {
+                final long[] measure = measureChanging(file, dest);
+                final Path moved = FileMoveUtils.move(file, dest, verifyMoveChecksum(), Files.isDirectory(file) ? getMovePool() : null);
+                if (measure != null) {
+                    getStorageUsage().moved(file, moved, measure[0], measure[1]);
+                }
+                return moved;
             }
         } catch (IOException e) {
             getLogger().error("SimpleFilesBackgroundTask move - " + file, e);
@@ -308,10 +513,25 @@ public abstract class SimpleFilesBackgroundTask extends AbstractScanFilesBackgro
 
     private void delete(final Path file) {
         try {
-            FileSystemUtils.deleteRecursively(file);
+            final long[] measure = measureChanging(file, null);
+            if (FileSystemUtils.deleteRecursively(file) && measure != null) {
+                getStorageUsage().removed(file, measure[0], measure[1]);
+            }
         } catch (IOException e) {
             getLogger().error("SimpleFilesBackgroundTask delete - " + file, e);
         }
     }
 
+    private long[] measureChanging(final Path file, final Path dest) {
+        final StorageUsage usage = getStorageUsage();
+        if (usage == null) {
+            return null;
+        }
+        usage.changing(file);
+        if (dest != null) {
+            usage.changing(dest);
+        }
+        return StorageUsage.measure(file);
+    }
+
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.flcit.springboot.commons.storage.ratelimit.TokenBucketRateLimiter;
+import org.slf4j.Logger;
+
+/**
+ * Dispatcher of the files of a task limited by a {@link TokenBucketRateLimiter}.
+ * <p>
+ * One thread takes the waiting files by rank then by arrival, waits for the tokens of the first one
+ * and hands it to the executor, so the waiting files are not woken up for each token.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class TaskDispatcher {
+
+    private final String threadName;
+    private final TokenBucketRateLimiter limiter;
+    private final Logger logger;
+    private final PriorityBlockingQueue<Dispatch> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private Thread thread;
+    private boolean closed;
+
+    TaskDispatcher(String threadName, TokenBucketRateLimiter limiter, Logger logger) {
+        this.threadName = threadName;
+        this.limiter = limiter;
+        this.logger = logger;
+    }
+
+    /**
+     * @param rank the rank of the file, the files of the same rank are dispatched in their order of arrival
+     * @param size the size in bytes of the file
+     * @param command the dispatch of the file, run when its tokens are taken
+     * @param cancel run instead of the command if the dispatcher is closed before
+     */
+    void add(long rank, long size, Runnable command, Runnable cancel) {
+        synchronized (this) {
+            if (!closed) {
+                queue.add(new Dispatch(rank, sequence.getAndIncrement(), size, command, cancel));
+                if (this.thread == null) {
+                    this.thread = new Thread(this::run, threadName);
+                    this.thread.setDaemon(true);
+                    this.thread.start();
+                }
+                return;
+            }
+        }
+        cancel.run();
+    }
+
+    /**
+     * Stop the thread and cancel the files waiting for their tokens.
+     */
+    void close() {
+        synchronized (this) {
+            this.closed = true;
+            if (this.thread != null) {
+                this.thread.interrupt();
+            }
+        }
+        final List<Dispatch> cancelled = new ArrayList<>();
+        queue.drainTo(cancelled);
+        for (Dispatch dispatch : cancelled) {
+            dispatch.cancel.run();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final Dispatch next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                // one wait per attempt, the tokens may be taken by another task sharing the limiter
+                while (!limiter.tryAcquire(next.size)) {
+                    TimeUnit.MILLISECONDS.sleep(Math.max(1, limiter.waitTime(next.size)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                next.cancel.run();
+                return;
+            }
+            try {
+                next.command.run();
+            } catch (RuntimeException e) {
+                logger.error("TaskDispatcher run", e);
+                next.cancel.run();
+            }
+        }
+    }
+
+    private static final class Dispatch implements Comparable<Dispatch> {
+
+        private final long rank;
+        private final long sequence;
+        private final long size;
+        private final Runnable command;
+        private final Runnable cancel;
+
+        private Dispatch(long rank, long sequence, long size, Runnable command, Runnable cancel) {
+            this.rank = rank;
+            this.sequence = sequence;
+            this.size = size;
+            this.command = command;
+            this.cancel = cancel;
+        }
+
+        @Override
+        public int compareTo(Dispatch other) {
+            final int compare = Long.compare(rank, other.rank);
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+/**
+ * Drain of the files in progress at the stop of a task, and claims file of the files taken and not started.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class TaskDrain {
+
+    private final String name;
+    private final Path claimsFile;
+    private final Logger logger;
+
+    /**
+     * @param name the name of the task in the logs
+     * @param claimsFile the file of the claims, null to let the scan find the files again
+     * @param logger
+     */
+    TaskDrain(String name, Path claimsFile, Logger logger) {
+        this.name = name;
+        this.claimsFile = claimsFile;
+        this.logger = logger;
+    }
+
+    /**
+     * @param states the live states of the files of the task
+     * @param timeout the maximum time in milliseconds to wait
+     * @return the number of files still running
+     */
+    int await(Collection<FileState> states, long timeout) {
+        final long deadline = System.currentTimeMillis() + timeout;
+        int running;
+        while ((running = countRunning(states)) > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (running > 0 && logger.isWarnEnabled()) {
+            logger.warn("{} drain - {} files still in progress", name, running);
+        }
+        return running;
+    }
+
+    private static int countRunning(Collection<FileState> states) {
+        int running = 0;
+        for (FileState state : states) {
+            if (state.getStatus() == FileState.Status.RUNNING) {
+                running++;
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Save the files waiting for a thread or for a new attempt.
+     * @param states
+     */
+    void saveClaims(Collection<FileState> states) {
+        if (claimsFile == null) {
+            return;
+        }
+        final List<String> lines = new ArrayList<>();
+        for (FileState state : states) {
+            if (state.getStatus() == FileState.Status.STABLE || state.getStatus() == FileState.Status.RETRYING) {
+                lines.add(state.getFile().toString());
+            }
+        }
+        try {
+            if (lines.isEmpty()) {
+                Files.deleteIfExists(claimsFile);
+                return;
+            }
+            final Path tmp = claimsFile.resolveSibling(claimsFile.getFileName() + ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, claimsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (logger.isInfoEnabled()) {
+                logger.info("{} saveClaims - {} files", name, lines.size());
+            }
+        } catch (IOException e) {
+            logger.error("AbstractFilesBackgroundTask saveClaims - " + claimsFile, e);
+        }
+    }
+
+    /**
+     * The claims file is deleted once read.
+     * @return the files saved at the last stop and still existing
+     */
+    List<Path> resumeClaims() {
+        if (claimsFile == null || !Files.exists(claimsFile)) {
+            return Collections.emptyList();
+        }
+        final List<Path> files = new ArrayList<>();
+        try {
+            final List<String> lines = Files.readAllLines(claimsFile, StandardCharsets.UTF_8);
+            Files.delete(claimsFile);
+            for (String line : lines) {
+                if (!line.isEmpty() && Files.exists(Paths.get(line))) {
+                    files.add(Paths.get(line));
+                }
+            }
+        } catch (IOException e) {
+            logger.error("AbstractFilesBackgroundTask resumeClaims - " + claimsFile, e);
+        }
+        return files;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+import org.flcit.springboot.commons.storage.journal.ErrorJournal;
+import org.flcit.springboot.commons.storage.journal.ErrorRecord;
+
+/**
+ * Error journal of a task, opened at the first use then flushed by its own thread.
+ * <p>
+ * The flush does not wait behind the retention and the compaction run by the maintenance thread of the task.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class TaskErrorJournal implements Closeable {
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int segments;
+    private final String threadName;
+    private final Logger logger;
+    private ErrorJournal journal;
+    private ScheduledExecutorService flusher;
+    private boolean closed;
+
+    TaskErrorJournal(Path directory, long segmentSize, int segments, String threadName, Logger logger) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segments = segments;
+        this.threadName = threadName;
+        this.logger = logger;
+    }
+
+    private synchronized ErrorJournal getJournal() throws IOException {
+        if (this.closed) {
+            throw new IOException("Error journal closed: " + directory);
+        }
+        if (this.journal == null) {
+            this.journal = new ErrorJournal(directory, segmentSize, segments);
+            this.flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flush, ErrorJournal.FLUSH_INTERVAL, ErrorJournal.FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        return this.journal;
+    }
+
+    /**
+     * @param file
+     * @param error
+     * @throws IOException
+     */
+    void append(Path file, byte[] error) throws IOException {
+        getJournal().append(file, error);
+    }
+
+    /**
+     * @param file
+     * @return the last error of the file or null
+     * @throws IOException
+     */
+    ErrorRecord find(Path file) throws IOException {
+        return getJournal().find(file);
+    }
+
+    private synchronized void flush() {
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.journal.flushIfPending();
+        } catch (IOException | RuntimeException e) {
+            logger.error("SimpleFilesBackgroundTask flushErrorJournal", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        if (this.flusher != null) {
+            // not interrupted, an interrupted write closes the channel of the segment
+            this.flusher.shutdown();
+        }
+        if (this.journal != null) {
+            this.journal.close();
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+/**
+ * Maintenance thread of a task, running its retention policies and the periodic commands of its collaborators.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+final class TaskMaintenance {
+
+    private final String threadName;
+    private final Logger logger;
+    private ScheduledExecutorService executor;
+
+    TaskMaintenance(String threadName, Logger logger) {
+        this.threadName = threadName;
+        this.logger = logger;
+    }
+
+    /**
+     * An exception does not cancel the next executions.
+     * @param command
+     * @param initialDelay
+     * @param period the delay between two executions, 0 to run the command once
+     */
+    synchronized void schedule(Runnable command, long initialDelay, long period) {
+        if (this.executor == null) {
+            this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        final Runnable safeCommand = () -> {
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                logger.error("AbstractFilesBackgroundTask maintenance", e);
+            }
+        };
+        if (period > 0) {
+            this.executor.scheduleWithFixedDelay(safeCommand, initialDelay, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.executor.schedule(safeCommand, initialDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Interrupt the running command and cancel the next ones.
+     */
+    synchronized void shutdownNow() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+}
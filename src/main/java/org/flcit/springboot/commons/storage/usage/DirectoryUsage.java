@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.usage;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes and regular files of a directory and of its subdirectories, maintained by {@link StorageUsage}.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class DirectoryUsage {
+
+    private final Path directory;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private volatile long quota;
+    private volatile long lastReconciliation;
+    private long version;
+
+    DirectoryUsage(Path directory, long quota) {
+        this.directory = directory;
+        this.quota = quota;
+    }
+
+    synchronized void add(long bytes, long files) {
+        this.version++;
+        this.bytes.addAndGet(bytes);
+        this.files.addAndGet(files);
+    }
+
+    synchronized void changing() {
+        this.version++;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * @param bytes the bytes measured on the disk
+     * @param files the files measured on the disk
+     * @param version the version before the measure
+     * @return false if the directory changed during the measure, the measure is then ignored
+     */
+    synchronized boolean reconciled(long bytes, long files, long version) {
+        if (this.version != version) {
+            return false;
+        }
+        this.bytes.set(bytes);
+        this.files.set(files);
+        this.lastReconciliation = System.currentTimeMillis();
+        return true;
+    }
+
+    long rawBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return the absolute and normalized path of the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the bytes of the regular files, the changes made outside of the application are taken at the next reconciliation
+     */
+    public long getBytes() {
+        return Math.max(0, bytes.get());
+    }
+
+    /**
+     * @return the number of regular files
+     */
+    public long getFiles() {
+        return Math.max(0, files.get());
+    }
+
+    /**
+     * @return the maximum bytes of the directory or -1
+     */
+    public long getQuota() {
+        return quota;
+    }
+
+    /**
+     * @param quota the maximum bytes of the directory, -1 for none
+     */
+    public void setQuota(long quota) {
+        this.quota = quota;
+    }
+
+    /**
+     * @return the time of the end of the last reconciliation or 0
+     */
+    public long getLastReconciliation() {
+        return lastReconciliation;
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.usage;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import org.flcit.springboot.commons.storage.exception.StorageException;
+
+/**
+ * Bytes and files of the tracked directories of the storage, maintained incrementally on the copies, deletions and moves of the application.
+ * <p>
+ * A file counts in all the tracked directories which contain it.
+ * A reconciliation walks the tracked directories at the start then every {@code reconcileInterval} to take the changes made outside of the application.
+ * The walk of a directory changed meanwhile by the application is retried, then ignored until the next reconciliation, so a write is never counted twice.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public class StorageUsage implements Runnable, InitializingBean, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StorageUsage.class);
+    private static final String FORMAT_QUOTA_EXCEEDED = "Quota of %s bytes exceeded for directory: %s";
+    private static final int RECONCILE_ATTEMPTS = 3;
+
+    private final Path root;
+    private final long reconcileInterval;
+    private final ConcurrentMap<Path, DirectoryUsage> usages = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reconciliation;
+
+    /**
+     * @param root the root of the storage, always tracked
+     * @param reconcileInterval the delay in milliseconds between two reconciliations, 0 to only reconcile at the start
+     */
+    public StorageUsage(Path root, long reconcileInterval) {
+        this.root = normalize(root);
+        this.reconcileInterval = reconcileInterval;
+        track(this.root, -1);
+    }
+
+    /**
+     * @param directory the directory, relative to the root or absolute
+     * @param quota the maximum bytes of the directory, -1 for none
+     * @return the usage of the directory
+     */
+    public DirectoryUsage track(Path directory, long quota) {
+        final DirectoryUsage usage = usages.computeIfAbsent(normalize(root.resolve(directory)), key -> new DirectoryUsage(key, quota));
+        usage.setQuota(quota);
+        return usage;
+    }
+
+    /**
+     * @return the absolute and normalized path of the root
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @param directory the directory, relative to the root or absolute
+     * @return the usage or null if the directory is not tracked
+     */
+    public DirectoryUsage getUsage(Path directory) {
+        return usages.get(normalize(root.resolve(directory)));
+    }
+
+    /**
+     * @return the usages of the tracked directories
+     */
+    public Collection<DirectoryUsage> getUsages() {
+        return Collections.unmodifiableCollection(usages.values());
+    }
+
+    /**
+     * Mark the start of a change of the storage accounted later by {@link #added(Path, long, long)}, {@link #removed(Path, long, long)} or {@link #moved(Path, Path, long, long)}.
+     * @param path a file or a directory tree about to change
+     */
+    public void changing(Path path) {
+        for (Path directory = normalize(path).getParent(); directory != null && directory.startsWith(root); directory = directory.getParent()) {
+            final DirectoryUsage usage = usages.get(directory);
+            if (usage != null) {
+                usage.changing();
+            }
+        }
+    }
+
+    /**
+     * @param path a file or a directory tree added to the storage
+     * @param bytes
+     * @param files the number of regular files
+     */
+    public void added(Path path, long bytes, long files) {
+        if (bytes == 0 && files == 0) {
+            return;
+        }
+        for (Path directory = normalize(path).getParent(); directory != null && directory.startsWith(root); directory = directory.getParent()) {
+            final DirectoryUsage usage = usages.get(directory);
+            if (usage != null) {
+                usage.add(bytes, files);
+            }
+        }
+    }
+
+    /**
+     * @param path a file or a directory tree removed from the storage
+     * @param bytes
+     * @param files the number of regular files
+     */
+    public void removed(Path path, long bytes, long files) {
+        added(path, -bytes, -files);
+    }
+
+    /**
+     * @param source
+     * @param target
+     * @param bytes
+     * @param files the number of regular files
+     */
+    public void moved(Path source, Path target, long bytes, long files) {
+        removed(source, bytes, files);
+        added(target, bytes, files);
+    }
+
+    /**
+     * @param path the file to write
+     * @param bytes the bytes to add
+     * @throws StorageException if a tracked directory containing the file would exceed its quota
+     */
+    public void checkQuota(Path path, long bytes) {
+        for (Path directory = normalize(path).getParent(); directory != null && directory.startsWith(root); directory = directory.getParent()) {
+            final DirectoryUsage usage = usages.get(directory);
+            if (usage != null && usage.getQuota() >= 0 && usage.rawBytes() + bytes > usage.getQuota()) {
+                throw new StorageException(String.format(FORMAT_QUOTA_EXCEEDED, usage.getQuota(), directory));
+            }
+        }
+    }
+
+    /**
+     * @param path a file or a directory tree
+     * @return the bytes and the number of the regular files, {0, 0} if the path does not exist
+     */
+    public static long[] measure(Path path) {
+        final long[] measure = new long[2];
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        measure[0] += attrs.size();
+                        measure[1]++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // removed during the walk
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // nothing to measure
+        } catch (IOException e) {
+            LOG.warn(String.format("StorageUsage measure - %s", path), e);
+        }
+        return measure;
+    }
+
+    /**
+     * Reconcile the tracked directories with the content of the disk.
+     */
+    @Override
+    public synchronized void run() {
+        for (DirectoryUsage usage : usages.values()) {
+            reconcile(usage);
+        }
+    }
+
+    private static void reconcile(DirectoryUsage usage) {
+        for (int attempt = 0; attempt < RECONCILE_ATTEMPTS && !Thread.currentThread().isInterrupted(); attempt++) {
+            final long version = usage.version();
+            final long[] measure = measure(usage.getDirectory());
+            if (usage.reconciled(measure[0], measure[1], version)) {
+                return;
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("StorageUsage reconcile - changed during the walk: %s", usage.getDirectory()));
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.reconciliation = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "StorageUsage-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (reconcileInterval > 0) {
+            this.reconciliation.scheduleWithFixedDelay(this, 0, reconcileInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.reconciliation.execute(this);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (this.reconciliation != null) {
+            this.reconciliation.shutdownNow();
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+}
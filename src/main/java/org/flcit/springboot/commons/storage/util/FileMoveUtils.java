@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32C;
+
+import org.flcit.springboot.commons.storage.jfr.FileMoveEvent;
+
+/**
+ * Move files and directories with a rename when the target is on the same file store.
+ * <p>
+ * A cross-device target is detected by the failure of the atomic rename, the file is then copied with
+ * {@link FileChannel#transferTo} in a temporary file renamed once its size and optionally its checksum are verified,
+ * and the source is deleted unless its size or its last modified time changed during the copy. The files of a directory tree are moved in parallel by the pool given by the caller.
+ * 
+ * @since 
+ * @author Florian Lestic
+ */
+public final class FileMoveUtils {
+
+    private static final String TMP_SUFFIX = ".moving";
+    private static final int BUFFER_SIZE = 65536;
+
+    private FileMoveUtils() { }
+
+    /**
+     * @param source a file or a directory
+     * @param target the target path, replaced if it is a file
+     * @param verifyChecksum true to compare the checksums of the source and of the copy
+     * @param pool the pool moving the files of a directory, null to move them one by one in the calling thread
+     * @return the target
+     * @throws IOException
+     */
+    public static Path move(Path source, Path target, boolean verifyChecksum, ForkJoinPool pool) throws IOException {
+        final FileMoveEvent event = new FileMoveEvent();
+        event.begin();
+        try {
+            final Path moved = Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            event.commit(source, target, false);
+            return moved;
+        } catch (AtomicMoveNotSupportedException e) {
+            // cross-device target
+            final Path moved = Files.isDirectory(source) ? moveDirectory(source, target, verifyChecksum, pool) : copyAndDelete(source, target, verifyChecksum);
+            event.commit(source, target, true);
+            return moved;
+        } catch (FileSystemException e) {
+            // the rename of a directory on a non empty directory is not always reported as a DirectoryNotEmptyException
+            final boolean directory = Files.isDirectory(source);
+            if (directory && Files.isDirectory(target)) {
+                return moveDirectory(source, target, verifyChecksum, pool);
+            } else if (!directory && Files.exists(target)) {
+                return Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            throw e;
+        }
+    }
+
+    private static Path moveFile(Path source, Path target, boolean verifyChecksum) throws IOException {
+        try {
+            return Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            return copyAndDelete(source, target, verifyChecksum);
+        } catch (FileAlreadyExistsException e) {
+            return Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path moveDirectory(Path source, Path target, boolean verifyChecksum, ForkJoinPool pool) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        final List<Path> directories = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                directories.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (pool == null) {
+            for (Path file : files) {
+                moveFile(file, target.resolve(source.relativize(file)), verifyChecksum);
+            }
+        } else {
+            moveFiles(source, target, files, verifyChecksum, pool);
+        }
+        for (int i = directories.size() - 1; i >= 0; i--) {
+            Files.delete(directories.get(i));
+        }
+        return target;
+    }
+
+    private static void moveFiles(Path source, Path target, List<Path> files, boolean verifyChecksum, ForkJoinPool pool) throws IOException {
+        try {
+            pool.submit(() -> files.parallelStream().forEach(file -> {
+                try {
+                    moveFile(file, target.resolve(source.relativize(file)), verifyChecksum);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted move of " + source, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new IOException("Failed move of " + source, e.getCause());
+        }
+    }
+
+    private static Path copyAndDelete(Path source, Path target, boolean verifyChecksum) throws IOException {
+        final Path tmp = target.resolveSibling(target.getFileName() + TMP_SUFFIX);
+        final BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    final long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        // the source shrank, reported by the size check
+                        break;
+                    }
+                    position += transferred;
+                }
+                out.force(true);
+                if (out.size() != size) {
+                    throw new IOException(String.format("Size mismatch after copy of %s : %d / %d", source, size, out.size()));
+                }
+            }
+            if (verifyChecksum && checksum(source) != checksum(tmp)) {
+                throw new IOException("Checksum mismatch after copy of " + source);
+            }
+            // a source written during the copy is kept, the copy may miss its last writes
+            final BasicFileAttributes copied = Files.readAttributes(source, BasicFileAttributes.class);
+            if (copied.size() != attrs.size() || !copied.lastModifiedTime().equals(attrs.lastModifiedTime())) {
+                throw new IOException("Source modified during copy of " + source);
+            }
+            Files.setLastModifiedTime(tmp, attrs.lastModifiedTime());
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.delete(source);
+        return target;
+    }
+
+    /**
+     * @param file
+     * @return the CRC32C of the file
+     * @throws IOException
+     */
+    public static long checksum(Path file) throws IOException {
+        final CRC32C crc = new CRC32C();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+}
@@ -16,6 +16,9 @@
 
 package org.flcit.springboot.commons.storage;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.when;
@@ -25,13 +28,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedStatic;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
 import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import org.flcit.commons.core.functional.runnable.RunnableException;
 import org.flcit.springboot.commons.storage.configuration.StorageProperties;
 import org.flcit.springboot.commons.storage.service.StorageService;
+import org.flcit.springboot.commons.storage.task.FileProcessor;
+import org.flcit.springboot.commons.storage.task.PropertiesFilesBackgroundTask;
 import org.flcit.springboot.commons.test.util.ContextRunnerUtils;
 import org.flcit.springboot.commons.test.util.PropertyTestUtils;
 
@@ -45,6 +52,9 @@ class StorageAutoConfigurationTest {
             .withConfiguration(AutoConfigurations.of(
                     CommonsStorageAutoConfiguration.class));
 
+    @TempDir
+    Path directory;
+
     @Test
     void storageBeanOk() throws Exception {
         mockFiles(() -> 
@@ -82,6 +92,28 @@ class StorageAutoConfigurationTest {
         );
     }
 
+    @Test
+    void taskBeanOk() throws IOException {
+        Files.createDirectories(directory.resolve("inbox"));
+        this.contextRunner
+            .withBean("processor", FileProcessor.class, () -> file -> { })
+            .withPropertyValues(
+                    PropertyTestUtils.getValue(PREFIX_PROPERTY, "location", directory.toString()),
+                    PropertyTestUtils.getValue(PREFIX_PROPERTY, "tasks.inbox.path", "inbox"),
+                    PropertyTestUtils.getValue(PREFIX_PROPERTY, "tasks.inbox.processor", "processor"),
+                    PropertyTestUtils.getValue(PREFIX_PROPERTY, "tasks.inbox.concurrency", "2"),
+                    PropertyTestUtils.getValue(PREFIX_PROPERTY, "tasks.inbox.check-file-exists-on-completed", "true")
+            )
+            .run(context -> {
+                final PropertiesFilesBackgroundTask task = context.getBean(PropertiesFilesBackgroundTask.class);
+                assertEquals(directory.resolve("inbox"), task.getPath());
+                assertEquals(2, context.getBean(ThreadPoolTaskExecutor.class).getMaxPoolSize());
+                assertTrue(task.isRunning());
+                context.close();
+                assertFalse(task.isRunning());
+            });
+    }
+
     private static final void mockFiles(RunnableException runnable) throws Exception {
         try (MockedStatic<Files> mock = mockStatic(Files.class)) {
             runnable.run();
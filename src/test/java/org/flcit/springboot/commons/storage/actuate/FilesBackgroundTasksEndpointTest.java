@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.actuate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileFilter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.flcit.springboot.commons.storage.task.SimpleFilesBackgroundTask;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+
+class FilesBackgroundTasksEndpointTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FilesBackgroundTasksEndpointTest.class);
+    private static final FileFilter JSON = file -> file.getName().endsWith(".json");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void controlOk() throws Exception {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        final SimpleFilesBackgroundTask task = createTask(executor);
+        final FilesBackgroundTasksEndpoint endpoint = createEndpoint(task);
+        try {
+            assertEquals(Set.of("task"), endpoint.tasks().keySet());
+            assertNull(endpoint.task("unknown", null));
+            assertNull(endpoint.control("unknown", "pause", null));
+            assertTrue(endpoint.control("task", "pause", null).isPaused());
+            assertTrue(task.isPaused());
+            assertFalse(endpoint.control("task", "resume", null).isPaused());
+            assertFalse(task.isPaused());
+            assertEquals(4, endpoint.control("task", "concurrency", 4).getConcurrency());
+            assertEquals(4, executor.getMaximumPoolSize());
+            assertEquals(2, endpoint.control("task", "concurrency", 2).getConcurrency());
+            assertEquals(2, executor.getCorePoolSize());
+            assertThrows(InvalidEndpointRequestException.class, () -> endpoint.control("task", "concurrency", 0));
+            assertThrows(InvalidEndpointRequestException.class, () -> endpoint.control("task", "concurrency", null));
+            assertThrows(InvalidEndpointRequestException.class, () -> endpoint.control("task", "stop", null));
+        } finally {
+            task.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void rescanOk() throws Exception {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        final SimpleFilesBackgroundTask task = createTask(executor);
+        final FilesBackgroundTasksEndpoint endpoint = createEndpoint(task);
+        try {
+            assertTrue(await(() -> task.getLastScanTime() > 0));
+            final long lastScanTime = task.getLastScanTime();
+            Thread.sleep(20);
+            // the next scan is not due before a minute
+            endpoint.control("task", "rescan", null);
+            assertTrue(await(() -> task.getLastScanTime() > lastScanTime));
+        } finally {
+            task.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void taskFilesOk() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Files.write(directory.resolve("file" + i + ".json"), new byte[1]);
+        }
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        final SimpleFilesBackgroundTask task = createTask(executor);
+        final FilesBackgroundTasksEndpoint endpoint = createEndpoint(task);
+        try {
+            assertTrue(await(() -> task.getFileStates().size() == 3));
+            assertEquals(3, endpoint.task("task", null).getFiles().size());
+            assertFalse(endpoint.task("task", null).isTruncated());
+            assertEquals(2, endpoint.task("task", 2).getFiles().size());
+            assertTrue(endpoint.task("task", 2).isTruncated());
+            assertTrue(endpoint.tasks().get("task").getFiles().isEmpty());
+            assertThrows(InvalidEndpointRequestException.class, () -> endpoint.task("task", -1));
+        } finally {
+            task.stop();
+            executor.shutdown();
+        }
+    }
+
+    private SimpleFilesBackgroundTask createTask(ThreadPoolExecutor executor) throws Exception {
+        final SimpleFilesBackgroundTask task = new SimpleFilesBackgroundTask(directory, JSON, executor) {
+            @Override
+            protected void process(Path file) {
+                // the files are kept
+            }
+            @Override
+            protected long stableDelay() {
+                return 60000;
+            }
+            @Override
+            protected long minScanDelay() {
+                return 60000;
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+            @Override
+            protected Logger getLogger() {
+                return LOG;
+            }
+        };
+        task.afterPropertiesSet();
+        return task;
+    }
+
+    private static FilesBackgroundTasksEndpoint createEndpoint(SimpleFilesBackgroundTask task) {
+        final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("task", task);
+        return new FilesBackgroundTasksEndpoint(beanFactory);
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+}
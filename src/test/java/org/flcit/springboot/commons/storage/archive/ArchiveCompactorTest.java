@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArchiveCompactorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void compactOk() throws Exception {
+        Files.write(Files.createDirectories(directory.resolve("sub")).resolve("test0.json"), new byte[] { 1, 2 });
+        Files.write(directory.resolve("test1.json"), new byte[] { 3 });
+        Files.write(directory.resolve("test2.json"), new byte[] { 4 });
+        assertEquals(3, new ArchiveCompactor(directory, 1).compact(directory));
+        assertEquals(3, ArchiveIndex.count(directory));
+        assertTrue(Files.exists(ArchiveIndex.find(directory, "sub/test0.json").getSegment()));
+        assertNotNull(ArchiveIndex.find(directory, "test2.json"));
+        assertNull(ArchiveIndex.find(directory, "test3.json"));
+        assertFalse(Files.exists(directory.resolve("sub")));
+        assertFalse(Files.exists(directory.resolve("test1.json")));
+        assertEquals(0, new ArchiveCompactor(directory, 1).compact(directory));
+    }
+
+    @Test
+    void recoverOk() throws Exception {
+        Files.write(directory.resolve("test0.json"), new byte[] { 1 });
+        final ArchiveCompactor compactor = new ArchiveCompactor(directory, 1024);
+        assertEquals(1, compactor.compact(directory));
+        final Path segments = directory.resolve(ArchiveIndex.SEGMENTS_DIRECTORY);
+        Files.write(segments.resolve("001.zip"), new byte[] { 1 });
+        Files.write(segments.resolve("002.zip.tmp"), new byte[] { 1 });
+        Files.write(segments.resolve("index.tmp"), new byte[] { 1 });
+        assertEquals(3, compactor.recover(directory));
+        assertTrue(Files.exists(segments.resolve("000.zip")));
+        assertEquals(1, ArchiveIndex.count(directory));
+    }
+
+    @Test
+    void escapedNameOk() throws Exception {
+        final String name = "test\t0\n.json";
+        Files.write(directory.resolve(name), new byte[] { 1, 2, 3 });
+        Files.write(directory.resolve("test\\t1.json"), new byte[] { 4 });
+        assertEquals(2, new ArchiveCompactor(directory, 1024).compact(directory));
+        assertEquals(2, ArchiveIndex.count(directory));
+        try (InputStream in = ArchiveIndex.find(directory, name).newInputStream()) {
+            assertArrayEquals(new byte[] { 1, 2, 3 }, in.readAllBytes());
+        }
+        try (InputStream in = ArchiveIndex.find(directory, "test\\t1.json").newInputStream()) {
+            assertArrayEquals(new byte[] { 4 }, in.readAllBytes());
+        }
+        assertNull(ArchiveIndex.find(directory, "test\t1.json"));
+    }
+
+    @Test
+    void sortedIndexOk() throws Exception {
+        // the entries are sorted by runs of 7 and merged with the index of the previous compaction
+        final ArchiveCompactor compactor = new ArchiveCompactor(directory, 4096, 7);
+        for (int i = 0; i < 1000; i += 2) {
+            Files.write(directory.resolve("test" + i + ".json"), new byte[] { (byte) i });
+        }
+        assertEquals(500, compactor.compact(directory));
+        for (int i = 1; i < 1000; i += 2) {
+            Files.write(directory.resolve("test" + i + ".json"), new byte[] { (byte) i });
+        }
+        Files.write(directory.resolve("test0.json"), new byte[] { 2, 2 });
+        assertEquals(501, compactor.compact(directory));
+        assertEquals(1000, ArchiveIndex.count(directory));
+        for (int i = 1; i < 1000; i++) {
+            try (InputStream in = ArchiveIndex.find(directory, "test" + i + ".json").newInputStream()) {
+                assertArrayEquals(new byte[] { (byte) i }, in.readAllBytes());
+            }
+        }
+        // the file archived again replaces the first one
+        try (InputStream in = ArchiveIndex.find(directory, "test0.json").newInputStream()) {
+            assertArrayEquals(new byte[] { 2, 2 }, in.readAllBytes());
+        }
+        assertNull(ArchiveIndex.find(directory, "test1000.json"));
+        assertNull(ArchiveIndex.find(directory, "a.json"));
+        assertNull(ArchiveIndex.find(directory, "z.json"));
+    }
+
+}
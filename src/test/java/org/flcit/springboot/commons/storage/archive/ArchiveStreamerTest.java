@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.archive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArchiveStreamerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writeZipCompressedOk() throws Exception {
+        Files.write(directory.resolve("test.png"), new byte[] { 1, 2, 3 });
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, new ArchiveStreamer(ArchiveFormat.ZIP).write(directory, null, out));
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            final ZipEntry entry = zip.getNextEntry();
+            assertEquals("test.png", entry.getName());
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertArrayEquals(new byte[] { 1, 2, 3 }, zip.readAllBytes());
+        }
+    }
+
+    @Test
+    void writeTarGrownKo() throws Exception {
+        final Path file = Files.write(directory.resolve("test.json"), new byte[] { 1, 2 });
+        final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        final TarWriter tar = new TarWriter(new ByteArrayOutputStream(), new byte[512]);
+        assertThrows(IOException.class, () -> tar.write("test.json", attrs, new ByteArrayInputStream(new byte[] { 1, 2, 3 })));
+        assertThrows(IOException.class, () -> tar.write("test.json", attrs, new ByteArrayInputStream(new byte[] { 1 })));
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.chunk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChunkedFileProcessorTest {
+
+    private static final ChunkProcessor<String> TEXT = (chunk, offset) -> StandardCharsets.UTF_8.decode(chunk).toString();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void newLineOk() throws Exception {
+        final Path file = Files.writeString(directory.resolve("file.txt"), "aaa\nbb\ncccccc\nd\nee");
+        // the chunks of 3 bytes end in the middle of the records, they are extended to the end of the records
+        final List<String> chunks = new ChunkedFileProcessor(null, 3, RecordDelimiter.newLine()).process(file, TEXT);
+        assertEquals(Arrays.asList("aaa\n", "bb\n", "cccccc\n", "d\nee"), chunks);
+    }
+
+    @Test
+    void fixedLengthOk() throws Exception {
+        final Path file = Files.writeString(directory.resolve("file.txt"), "0000111122223333444");
+        final List<Long> offsets = new ChunkedFileProcessor(null, 6, RecordDelimiter.fixedLength(4)).process(file, (chunk, offset) -> offset);
+        assertEquals(Arrays.asList(0L, 8L, 16L), offsets);
+        final List<String> chunks = new ChunkedFileProcessor(null, 6, RecordDelimiter.fixedLength(4)).process(file, TEXT);
+        assertEquals(Arrays.asList("00001111", "22223333", "444"), chunks);
+    }
+
+    @Test
+    void emptyOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.txt"), new byte[0]);
+        final ChunkedFileProcessor processor = new ChunkedFileProcessor(null, 3, RecordDelimiter.newLine());
+        assertTrue(processor.process(file, TEXT).isEmpty());
+        assertNull(processor.process(file, TEXT, String::concat));
+    }
+
+    @Test
+    void smallerThanChunkOk() throws Exception {
+        final Path file = Files.writeString(directory.resolve("file.txt"), "aaa\nbb");
+        final List<Long> offsets = new ChunkedFileProcessor(null, 1024, RecordDelimiter.newLine()).process(file, (chunk, offset) -> offset);
+        assertEquals(Arrays.asList(0L), offsets);
+    }
+
+    @Test
+    void mergeOk() throws Exception {
+        final StringBuilder content = new StringBuilder();
+        final List<String> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            records.add("record" + i);
+            content.append("record").append(i).append('\n');
+        }
+        final Path file = Files.writeString(directory.resolve("file.txt"), content);
+        final String merged = new ChunkedFileProcessor(null, 100, RecordDelimiter.newLine()).process(file, TEXT, String::concat);
+        assertEquals(content.toString(), merged);
+        assertEquals(records, Arrays.asList(merged.split("\n")));
+    }
+
+}
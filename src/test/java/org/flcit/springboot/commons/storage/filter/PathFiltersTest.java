@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.filter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PathFiltersTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void ofOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+        final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        final FilenameEndFilter filter = new FilenameEndFilter(".json");
+        assertSame(filter, PathFilters.of(filter));
+        assertTrue(PathFilters.of(filter).accept(file, attrs));
+        final PathFilter overridden = PathFilters.of(new FilenameEndFilter(".json") {
+            @Override
+            public boolean accept(File dir, String name) {
+                return false;
+            }
+        });
+        assertFalse(overridden.accept(file, attrs));
+    }
+
+    @Test
+    void directoryOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+        assertTrue(DirectoryFileFilter.getInstance().accept(directory, null));
+        assertFalse(DirectoryFileFilter.getInstance().accept(file, null));
+        assertSame(DirectoryFileFilter.getInstance(), PathFilters.of(DirectoryFileFilter.getInstance()));
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.fingerprint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FingerprintRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenOk() throws Exception {
+        final Path file = directory.resolve("fingerprints.bin");
+        final int count = 3000;
+        try (FingerprintRegistry registry = new FingerprintRegistry(file, 1024)) {
+            for (int i = 0; i < count; i++) {
+                assertTrue(registry.register(fingerprint(i)));
+            }
+            assertFalse(registry.register(fingerprint(0)));
+            assertEquals(count, registry.size());
+        }
+        try (FingerprintRegistry registry = new FingerprintRegistry(file, 1024)) {
+            assertEquals(count, registry.size());
+            for (int i = 0; i < count; i++) {
+                assertTrue(registry.contains(fingerprint(i)), "fingerprint " + i);
+            }
+            assertFalse(registry.contains(fingerprint(count)));
+        }
+    }
+
+    @Test
+    void capacityKo() {
+        final Path file = directory.resolve("fingerprints.bin");
+        assertThrows(IllegalArgumentException.class, () -> new FingerprintRegistry(file, Integer.MAX_VALUE));
+    }
+
+    private static byte[] fingerprint(int i) {
+        return ByteBuffer.allocate(FingerprintRegistry.LENGTH).putInt(i + 1).putLong(i * 31L).array();
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ErrorJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenOk() throws Exception {
+        final int count = 2000;
+        try (ErrorJournal journal = new ErrorJournal(directory, 1 << 20, 10)) {
+            for (int i = 0; i < count; i++) {
+                journal.append(directory.resolve("file" + i + ".json"), error(i));
+            }
+        }
+        try (ErrorJournal journal = new ErrorJournal(directory, 1 << 20, 10)) {
+            assertEquals(count, journal.size());
+            for (int i = 0; i < count; i++) {
+                final ErrorRecord record = journal.find(directory.resolve("file" + i + ".json"));
+                assertNotNull(record);
+                assertEquals(new String(error(i), StandardCharsets.UTF_8), record.getError());
+            }
+        }
+    }
+
+    @Test
+    void flushIfPendingOk() throws Exception {
+        try (ErrorJournal journal = new ErrorJournal(directory, 1 << 20, 10)) {
+            journal.append(directory.resolve("file1.json"), error(1));
+            journal.append(directory.resolve("file2.json"), error(2));
+            journal.flushIfPending();
+            try (ErrorJournal reader = new ErrorJournal(directory.resolve("..").resolve(directory.getFileName()), 1 << 20, 10)) {
+                assertEquals(2, reader.size());
+            }
+        }
+    }
+
+    @Test
+    void escapedNameOk() throws Exception {
+        final Path file = directory.resolve("file\t1\n\\.json");
+        try (ErrorJournal journal = new ErrorJournal(directory, 1 << 20, 10)) {
+            journal.append(file, error(1));
+            journal.append(directory.resolve("file2.json"), error(2));
+            assertEquals(file.toString(), journal.find(file).getFile());
+        }
+        try (ErrorJournal journal = new ErrorJournal(directory, 1 << 20, 10)) {
+            assertEquals(2, journal.size());
+            final ErrorRecord record = journal.find(file);
+            assertNotNull(record);
+            assertEquals(file.toString(), record.getFile());
+            assertEquals(new String(error(1), StandardCharsets.UTF_8), record.getError());
+            assertEquals(new String(error(2), StandardCharsets.UTF_8), journal.find(directory.resolve("file2.json")).getError());
+        }
+    }
+
+    private static byte[] error(int i) {
+        final StringBuilder sb = new StringBuilder("java.io.IOException: error ").append(i).append('\n');
+        for (int j = 0; j < 10; j++) {
+            sb.append("\tat org.flcit.Test.method").append(j).append("(Test.java:").append(i).append(")\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.listing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectoryListerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void listUnsortedOk() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Files.createFile(directory.resolve("test" + i + ".json"));
+        }
+        ListingPage page = DirectoryLister.list(directory, null, null, false, 2, null);
+        assertEquals("test1.json", page.getEntries().get(1).getName());
+        // a removed entry does not shift the next pages
+        Files.delete(directory.resolve("test0.json"));
+        page = DirectoryLister.list(directory, null, ListingSort.NONE, false, 2, page.getNextToken());
+        assertEquals("test2.json", page.getEntries().get(0).getName());
+        page = DirectoryLister.list(directory, null, ListingSort.NONE, false, 2, page.getNextToken());
+        assertEquals(1, page.getEntries().size());
+        assertNull(page.getNextToken());
+    }
+
+    @Test
+    void listUnsortedDescendingKo() {
+        assertThrows(IllegalArgumentException.class, () -> DirectoryLister.list(directory, null, ListingSort.NONE, true, 2, null));
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class PipelineTest {
+
+    @Test
+    void submitOk() throws Exception {
+        try (Pipeline pipeline = new Pipeline("test")
+                .stage("length", 1, 1, (String input) -> input.length())
+                .stage("double", 2, 1, (Integer input) -> input * 2)) {
+            assertEquals(8, pipeline.submit("test").get(10, TimeUnit.SECONDS));
+            assertEquals(1, pipeline.getMetrics().get(0).getCompleted());
+            assertEquals(1, pipeline.getMetrics().get(1).getCompleted());
+        }
+    }
+
+    @Test
+    void submitErrorOk() throws Exception {
+        try (Pipeline pipeline = new Pipeline("test")
+                .stage("error", 1, 1, (String input) -> {
+                    throw new AssertionError(input);
+                })) {
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> pipeline.submit("test").get(10, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, e.getCause());
+            assertEquals(1, pipeline.getMetrics().get(0).getFailed());
+        }
+    }
+
+}
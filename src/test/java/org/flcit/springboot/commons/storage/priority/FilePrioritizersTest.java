@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.priority;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.flcit.springboot.commons.storage.filter.PathFilters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FilePrioritizersTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void priorityOk() throws Exception {
+        final FilePrioritizer prioritizer = new FilePrioritizers()
+                .rule(PathFilters.glob("URGENT_*"), 10)
+                .rule(PathFilters.glob("*.json"), -10)
+                .otherwise(1);
+        // the first matching rule wins
+        assertEquals(10, prioritizer.priority(directory.resolve("URGENT_1.json"), attrs("URGENT_1.json")));
+        assertEquals(-10, prioritizer.priority(directory.resolve("file.json"), attrs("file.json")));
+        assertEquals(1, prioritizer.priority(directory.resolve("file.txt"), attrs("file.txt")));
+        assertEquals(0, new FilePrioritizers().priority(directory.resolve("file.txt"), attrs("file.txt")));
+    }
+
+    private BasicFileAttributes attrs(String name) throws Exception {
+        return Files.readAttributes(Files.write(directory.resolve(name), new byte[1]), BasicFileAttributes.class);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void acquireOk() throws Exception {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(50, 0);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 25; i++) {
+            while (!limiter.tryAcquire(1000)) {
+                Thread.sleep(Math.max(1, limiter.waitTime(1000)));
+            }
+        }
+        final long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue(elapsed >= 400, "elapsed " + elapsed);
+        assertTrue(elapsed < 5000, "elapsed " + elapsed);
+    }
+
+    @Test
+    void tryAcquireOk() throws Exception {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 0);
+        assertFalse(limiter.tryAcquire(1));
+        Thread.sleep(150);
+        assertTrue(limiter.tryAcquire(1));
+        assertFalse(limiter.tryAcquire(1));
+        assertTrue(new TokenBucketRateLimiter(0, 0).tryAcquire(Long.MAX_VALUE));
+    }
+
+    @Test
+    void waitTimeOk() {
+        final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 0);
+        final long wait = limiter.waitTime(1);
+        assertTrue(wait > 0 && wait <= 100, "wait " + wait);
+        assertEquals(0, new TokenBucketRateLimiter(0, 0).waitTime(Long.MAX_VALUE));
+    }
+
+}
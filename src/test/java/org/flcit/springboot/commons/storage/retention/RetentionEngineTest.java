@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.retention;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RetentionEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void runOk() throws Exception {
+        createOldFiles(10);
+        new RetentionEngine(Collections.singletonList(new RetentionPolicy(directory, false, 1000, 0, 0)), 0).run();
+        assertEquals(0, count());
+    }
+
+    @Test
+    void runInterruptedOk() throws Exception {
+        createOldFiles(10);
+        Thread.currentThread().interrupt();
+        try {
+            new RetentionEngine(Collections.singletonList(new RetentionPolicy(directory, false, 1000, 0, 0)), 0).run();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(10, count());
+    }
+
+    private void createOldFiles(int count) throws Exception {
+        final FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        for (int i = 0; i < count; i++) {
+            Files.setLastModifiedTime(Files.createFile(directory.resolve("file" + i + ".json")), old);
+        }
+    }
+
+    private long count() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+}
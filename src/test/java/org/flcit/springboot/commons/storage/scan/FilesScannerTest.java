@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.scan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FilesScannerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void depthOk() throws Exception {
+        Files.write(directory.resolve("a.json"), new byte[1]);
+        Files.write(Files.createDirectories(directory.resolve("d1")).resolve("b.json"), new byte[1]);
+        Files.write(Files.createDirectories(directory.resolve("d1/d2")).resolve("c.json"), new byte[1]);
+        Files.write(Files.createDirectories(directory.resolve("d1/d2/d3")).resolve("d.json"), new byte[1]);
+        // the directories at the maximum depth are visited, not their entries
+        assertEquals(Set.of("a.json", "d1"), scan(new FilesScanner(1, null)));
+        assertEquals(Set.of("a.json", "d1/b.json", "d1/d2/c.json", "d1/d2/d3"), scan(new FilesScanner(3, null)));
+        assertEquals(Set.of("a.json", "d1/b.json", "d1/d2/c.json", "d1/d2/d3/d.json"), scan(new FilesScanner(4, null)));
+    }
+
+    @Test
+    void parallelOk() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            final Path sub = Files.createDirectories(directory.resolve("d" + i).resolve("sub"));
+            for (int j = 0; j < 50; j++) {
+                Files.write(sub.getParent().resolve("file" + j + ".json"), new byte[1]);
+                Files.write(sub.resolve("file" + j + ".json"), new byte[1]);
+            }
+        }
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final Set<String> parallel = scan(new FilesScanner(3, pool));
+            assertEquals(2000, parallel.size());
+            assertEquals(scan(new FilesScanner(3, null)), parallel);
+            assertTrue(parallel.contains("d19/sub/file49.json"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void leafFilterOk() throws Exception {
+        Files.write(Files.createDirectories(directory.resolve("d1")).resolve("a.json"), new byte[1]);
+        Files.write(directory.resolve("d1/b.txt"), new byte[1]);
+        Files.write(directory.resolve("c.txt"), new byte[1]);
+        // the filter only applies to the entries at the maximum depth
+        assertEquals(Set.of("c.txt", "d1/a.json"), scan(new FilesScanner(2, null, false, 0, file -> file.toString().endsWith(".json"))));
+    }
+
+    private Set<String> scan(FilesScanner scanner) throws Exception {
+        final Set<String> visited = ConcurrentHashMap.newKeySet();
+        assertTrue(scanner.scan(directory, (file, attrs) -> visited.add(directory.relativize(file).toString().replace('\\', '/'))));
+        return new TreeSet<>(visited);
+    }
+
+}
@@ -16,10 +16,12 @@
 
 package org.flcit.springboot.commons.storage.service;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -36,18 +38,33 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.flcit.commons.core.functional.runnable.RunnableException;
+import org.flcit.springboot.commons.storage.archive.ArchiveFormat;
 import org.flcit.springboot.commons.storage.configuration.StorageProperties;
 import org.flcit.springboot.commons.storage.exception.StorageException;
 import org.flcit.springboot.commons.storage.exception.StorageFileNotFoundException;
+import org.flcit.springboot.commons.storage.listing.ListingPage;
+import org.flcit.springboot.commons.storage.listing.ListingSort;
+import org.flcit.springboot.commons.storage.notification.StorageNotifier;
+import org.flcit.springboot.commons.storage.usage.DirectoryUsage;
+import org.flcit.springboot.commons.storage.usage.StorageUsage;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
 import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 class StorageServiceTest {
@@ -182,12 +199,134 @@ class StorageServiceTest {
         });
     }
 
+    @Test
+    void copyNotifyOk() {
+        RUNNER.withBean(StorageNotifier.class).run(context -> {
+            final StorageService service = context.getBean(StorageService.class);
+            final StorageNotifier notifier = context.getBean(StorageNotifier.class);
+            final Path directory = Path.of(System.getProperty("java.io.tmpdir"));
+            final List<Path> stored = new ArrayList<>();
+            notifier.register(directory, (file, attrs) -> stored.add(file));
+            final Path res = service.copy(new ByteArrayResource(new byte[] { 1, 2 }), "test.json", "", System.currentTimeMillis() + "_test.json");
+            try {
+                assertEquals(1, stored.size());
+                assertEquals(res.toAbsolutePath().normalize(), stored.get(0));
+            } finally {
+                Files.deleteIfExists(res);
+            }
+        });
+    }
+
+    @Test
+    void copyUsageOk(@TempDir Path root) {
+        final Path directory = root.resolve("usage");
+        final StorageUsage usage = new StorageUsage(root, 0);
+        final DirectoryUsage directoryUsage = usage.track(Path.of("usage"), 3);
+        RUNNER.withBean(StorageUsage.class, () -> usage).run(context -> {
+            final StorageService service = context.getBean(StorageService.class);
+            Files.createDirectories(directory);
+            // the initial reconciliation runs in its own thread
+            assertTrue(await(() -> usage.getUsages().stream().allMatch(u -> u.getLastReconciliation() > 0)));
+            service.copy(new ByteArrayResource(new byte[] { 1, 2 }), "test.json", directory.toString(), "test1.json");
+            assertEquals(2, directoryUsage.getBytes());
+            assertEquals(1, directoryUsage.getFiles());
+            final ByteArrayResource resource = new ByteArrayResource(new byte[] { 1, 2 });
+            assertThrows(StorageException.class, () -> service.copy(resource, "test.json", directory.toString(), "test2.json"));
+            assertFalse(Files.exists(directory.resolve("test2.json")));
+            assertEquals(2, directoryUsage.getBytes());
+            final ByteArrayResource overwrite = new ByteArrayResource(new byte[] { 3, 4, 5, 6 });
+            assertThrows(StorageException.class, () -> service.copy(overwrite, "test.json", directory.toString(), "test1.json"));
+            assertArrayEquals(new byte[] { 1, 2 }, Files.readAllBytes(directory.resolve("test1.json")));
+            assertEquals(2, directoryUsage.getBytes());
+            assertTrue(service.delete(directory.toString(), "test1.json"));
+            assertEquals(0, directoryUsage.getBytes());
+            assertEquals(0, directoryUsage.getFiles());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(0, files.count());
+            }
+        });
+    }
+
+    @Test
+    void listOk() {
+        RUNNER.run(context -> {
+            final StorageService service = context.getBean(StorageService.class);
+            final String directory = System.currentTimeMillis() + "_list";
+            final Path path = Files.createDirectories(Path.of(System.getProperty("java.io.tmpdir")).resolve(directory));
+            try {
+                for (int i = 0; i < 5; i++) {
+                    Files.write(path.resolve("test" + i + ".json"), new byte[i]);
+                }
+                Files.write(path.resolve("test.txt"), new byte[0]);
+                ListingPage page = service.list(directory, "*.json", ListingSort.NAME, true, 3, null);
+                assertEquals(3, page.getEntries().size());
+                assertEquals("test4.json", page.getEntries().get(0).getName());
+                assertEquals(4, page.getEntries().get(0).getSize());
+                assertNotNull(page.getNextToken());
+                page = service.list(directory, "*.json", ListingSort.NAME, true, 3, page.getNextToken());
+                assertEquals(2, page.getEntries().size());
+                assertEquals("test0.json", page.getEntries().get(1).getName());
+                assertNull(page.getNextToken());
+                assertEquals(6, service.list(directory, 10, null).getEntries().size());
+                assertThrows(StorageException.class, () -> service.list(directory, null, ListingSort.LAST_MODIFIED, false, 3, "token"));
+            } finally {
+                FileSystemUtils.deleteRecursively(path);
+            }
+            assertThrows(StorageFileNotFoundException.class, () -> service.list(directory, 10, null));
+        });
+    }
+
+    @Test
+    void writeArchiveOk() {
+        RUNNER.run(context -> {
+            final StorageService service = context.getBean(StorageService.class);
+            final String directory = System.currentTimeMillis() + "_archive";
+            final Path path = Files.createDirectories(Path.of(System.getProperty("java.io.tmpdir")).resolve(directory).resolve("sub"));
+            try {
+                Files.write(path.resolve("test.json"), new byte[] { 1, 2 });
+                Files.write(path.resolve("test.zip"), new byte[] { 3 });
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                assertEquals(2, service.writeArchive(directory, null, ArchiveFormat.ZIP, out));
+                final List<String> names = new ArrayList<>();
+                try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        names.add(entry.getName());
+                        if (entry.getName().endsWith(".zip")) {
+                            assertArrayEquals(new byte[] { 3 }, zip.readAllBytes());
+                        }
+                    }
+                }
+                assertTrue(names.contains("sub/test.json"));
+                assertTrue(names.contains("sub/test.zip"));
+                final ByteArrayOutputStream tar = new ByteArrayOutputStream();
+                assertEquals(1, service.writeArchive(directory, (file, attrs) -> file.toString().endsWith(".json"), ArchiveFormat.TAR, tar));
+                assertEquals(2 * 512, tar.size() - 1024);
+            } finally {
+                FileSystemUtils.deleteRecursively(path.getParent());
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertThrows(StorageFileNotFoundException.class, () -> service.writeArchive(directory, null, ArchiveFormat.ZIP, out));
+        });
+    }
+
     private static final void mockFiles(RunnableException runnable) throws Exception {
         try (MockedStatic<Files> mock = mockStatic(Files.class)) {
             runnable.run();
         }
     }
 
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
     private static final WebApplicationContextRunner getWebApplicationContextRunner() {
         final StorageProperties properties = new StorageProperties();
         properties.setLocation(System.getProperty("java.io.tmpdir"));
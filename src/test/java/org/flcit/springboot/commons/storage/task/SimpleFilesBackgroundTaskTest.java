@@ -0,0 +1,655 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.flcit.springboot.commons.storage.breaker.CircuitBreaker;
+import org.flcit.springboot.commons.storage.filter.PathFilters;
+import org.flcit.springboot.commons.storage.latency.LatencyTracker;
+import org.flcit.springboot.commons.storage.notification.StorageNotifier;
+import org.flcit.springboot.commons.storage.pipeline.Pipeline;
+import org.flcit.springboot.commons.storage.priority.FilePrioritizer;
+import org.flcit.springboot.commons.storage.priority.FilePrioritizers;
+import org.flcit.springboot.commons.storage.ratelimit.TokenBucketRateLimiter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class SimpleFilesBackgroundTaskTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimpleFilesBackgroundTaskTest.class);
+    private static final FileFilter JSON = file -> file.getName().endsWith(".json");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void purgeOtherShardOk() throws Exception {
+        final FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 172800000);
+        for (int i = 0; i < 40; i++) {
+            Files.setLastModifiedTime(Files.write(directory.resolve("file" + i + ".json"), new byte[1]), old);
+        }
+        final Path notAccepted = Files.setLastModifiedTime(Files.write(directory.resolve("file.tmp"), new byte[1]), old);
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected int shardCount() {
+                return 2;
+            }
+            @Override
+            protected long purgeMaxAge() {
+                return 1000;
+            }
+        };
+        task.afterPropertiesSet();
+        try {
+            assertTrue(await(() -> !Files.exists(notAccepted)));
+            for (int i = 0; i < 40; i++) {
+                assertTrue(Files.exists(directory.resolve("file" + i + ".json")), "file" + i + ".json");
+            }
+        } finally {
+            task.stop();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void acceptLegacyOverrideOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+        final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        assertTrue(new TestTask(directory, JSON).accept(file, attrs));
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected boolean accept(Path directory, Path filename) {
+                return false;
+            }
+        };
+        assertFalse(task.accept(file, attrs));
+    }
+
+    @Test
+    void streamFilesOk() throws Exception {
+        Files.write(directory.resolve("file.json"), new byte[1]);
+        Files.write(directory.resolve("file.tmp"), new byte[1]);
+        try (Stream<Path> files = new TestTask(directory, JSON).getStreamFiles()) {
+            assertEquals(Collections.singletonList(directory.resolve("file.json")), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void activeOk() {
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected boolean active() {
+                return true;
+            }
+        };
+        assertTrue(task.isActive());
+        task.pause();
+        assertFalse(task.isActive());
+        task.resume();
+        assertTrue(task.isActive());
+    }
+
+    @Test
+    void claimConcurrentOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+        final AtomicInteger processed = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected void process(Path file) {
+                processed.incrementAndGet();
+                await(release);
+            }
+        };
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                await(start);
+                task.startTask(file);
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        release.countDown();
+        assertTrue(await(() -> task.getFileStates().isEmpty()));
+        assertEquals(1, processed.get());
+        assertEquals(1, task.getStartedTasks());
+        task.stop();
+    }
+
+    @Test
+    void stagingOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+        final Path staging = Files.write(directory.resolve(PathFilters.STAGING_PREFIX + "file.json"), new byte[1]);
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected long stableDelay() {
+                return 60000;
+            }
+        };
+        task.refreshFiles();
+        assertEquals(FileState.Status.DISCOVERED, task.getFileState(file).getStatus());
+        assertNull(task.getFileState(staging));
+        task.stop();
+    }
+
+    @Test
+    void evictDiscoveredOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected long stableDelay() {
+                return 60000;
+            }
+        };
+        task.refreshFiles();
+        assertEquals(FileState.Status.DISCOVERED, task.getFileState(file).getStatus());
+        assertTrue(task.getOldestPendingAge() >= 0);
+        Thread.sleep(5);
+        task.refreshFiles();
+        assertEquals(FileState.Status.DISCOVERED, task.getFileState(file).getStatus());
+        Files.delete(file);
+        Thread.sleep(5);
+        task.refreshFiles();
+        assertNull(task.getFileState(file));
+        assertEquals(0, task.getOldestPendingAge());
+        task.stop();
+    }
+
+    @Test
+    void retryOk() throws Exception {
+        final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+        final AtomicInteger attempts = new AtomicInteger();
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected void process(Path file) throws IOException {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IOException("first attempt");
+                }
+            }
+            @Override
+            protected boolean retryOnTaskException(Path file, Exception e) {
+                return true;
+            }
+        };
+        task.startTask(file);
+        assertTrue(await(() -> task.getFileStates().isEmpty()));
+        assertEquals(2, attempts.get());
+        assertEquals(1, task.getRetriedTasks());
+        assertTrue(Files.exists(file));
+        task.stop();
+    }
+
+    @Test
+    void drainOk() throws Exception {
+        final Path running = Files.write(directory.resolve("file1.json"), new byte[1]);
+        final Path waiting = Files.write(directory.resolve("file2.json"), new byte[1]);
+        final Path claims = directory.resolve("claims.txt");
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestTask task = new TestTask(directory, JSON, Executors.newSingleThreadExecutor()) {
+            @Override
+            protected void process(Path file) {
+                await(release);
+            }
+            @Override
+            protected long drainTimeout() {
+                return 200;
+            }
+            @Override
+            protected Path claimsFile() {
+                return claims;
+            }
+        };
+        try {
+            task.startTask(running);
+            assertTrue(await(() -> task.getFileState(running).getStatus() == FileState.Status.RUNNING));
+            task.startTask(waiting);
+            final long start = System.currentTimeMillis();
+            task.stop();
+            assertTrue(System.currentTimeMillis() - start >= 200);
+            assertFalse(task.isRunning());
+        } finally {
+            release.countDown();
+        }
+        assertEquals(Collections.singletonList(waiting.toString()), Files.readAllLines(claims));
+        final List<Path> resumed = new CopyOnWriteArrayList<>();
+        final TestTask next = new TestTask(directory, JSON) {
+            @Override
+            protected void process(Path file) {
+                resumed.add(file);
+            }
+            @Override
+            protected Path claimsFile() {
+                return claims;
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+        };
+        next.afterPropertiesSet();
+        try {
+            assertTrue(await(() -> resumed.contains(waiting)));
+            assertFalse(Files.exists(claims));
+        } finally {
+            next.stop();
+        }
+    }
+
+    @Test
+    void halfOpenOk() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Files.write(directory.resolve("file" + i + ".json"), new byte[1]);
+        }
+        final CircuitBreaker breaker = new CircuitBreaker(2, 1, 1, 100, 1);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Thread.sleep(150);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        final AtomicInteger processed = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected void process(Path file) {
+                processed.incrementAndGet();
+                await(release);
+                throw new AssertionError("probe");
+            }
+            @Override
+            protected CircuitBreaker circuitBreaker() {
+                return breaker;
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+        };
+        task.afterPropertiesSet();
+        try {
+            // a single probe is dispatched, the other files stay discovered
+            assertTrue(await(() -> processed.get() == 1 && task.getFileStates().size() == 5));
+            assertEquals(1, task.getStartedTasks());
+            assertEquals(4, task.getFileStates().values().stream().filter(state -> state.getStatus() == FileState.Status.DISCOVERED).count());
+            // the probe of the process throwing an Error is given back
+            release.countDown();
+            assertTrue(await(() -> processed.get() > 1));
+        } finally {
+            release.countDown();
+            task.stop();
+        }
+    }
+
+    @Test
+    void openQueuedOk() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(10, 1, 1, 60000, 1);
+        final AtomicInteger processed = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestTask task = new TestTask(directory, JSON, Executors.newSingleThreadExecutor()) {
+            @Override
+            protected void process(Path file) throws IOException {
+                processed.incrementAndGet();
+                await(release);
+                throw new IOException("down");
+            }
+            @Override
+            protected CircuitBreaker circuitBreaker() {
+                return breaker;
+            }
+            @Override
+            protected boolean retryOnTaskException(Path file, Exception e) {
+                return true;
+            }
+        };
+        task.afterPropertiesSet();
+        try {
+            // the files are queued behind the first one while the circuit is closed
+            for (int i = 0; i < 5; i++) {
+                task.startTask(Files.write(directory.resolve("file" + i + ".json"), new byte[1]));
+            }
+            assertTrue(await(() -> processed.get() == 1));
+            release.countDown();
+            // the failed file is retried and blocked as well
+            assertTrue(await(() -> task.getFileStates().values().stream().filter(state -> state.getStatus() == FileState.Status.DISCOVERED).count() == 5));
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            assertEquals(1, processed.get());
+        } finally {
+            release.countDown();
+            task.stop();
+        }
+    }
+
+    @Test
+    void rateLimitOk() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<Path> processed = new CopyOnWriteArrayList<>();
+        final TestTask task = new TestTask(directory, JSON, executor) {
+            @Override
+            protected void process(Path file) {
+                processed.add(file);
+            }
+            @Override
+            protected TokenBucketRateLimiter rateLimiter() {
+                return new TokenBucketRateLimiter(5, 0);
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+        };
+        task.afterPropertiesSet();
+        try {
+            final long start = System.currentTimeMillis();
+            for (int i = 0; i < 3; i++) {
+                task.startTask(Files.write(directory.resolve("file" + i + ".json"), new byte[1]));
+            }
+            // the files waiting for their tokens do not hold the thread of the executor
+            final CountDownLatch free = new CountDownLatch(1);
+            executor.execute(free::countDown);
+            assertTrue(free.await(100, TimeUnit.MILLISECONDS));
+            assertTrue(await(() -> processed.size() == 3));
+            assertTrue(System.currentTimeMillis() - start >= 400);
+            // the files are dispatched in their order of arrival
+            assertEquals(List.of(directory.resolve("file0.json"), directory.resolve("file1.json"), directory.resolve("file2.json")), processed);
+        } finally {
+            task.stop();
+        }
+    }
+
+    @Test
+    void rateLimitStopOk() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<Path> processed = new CopyOnWriteArrayList<>();
+        final TestTask task = new TestTask(directory, JSON, executor) {
+            @Override
+            protected void process(Path file) {
+                processed.add(file);
+            }
+            @Override
+            protected TokenBucketRateLimiter rateLimiter() {
+                return new TokenBucketRateLimiter(1, 0);
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+        };
+        task.afterPropertiesSet();
+        for (int i = 0; i < 3; i++) {
+            task.startTask(Files.write(directory.resolve("file" + i + ".json"), new byte[1]));
+        }
+        // the files waiting for their tokens are not dispatched after the stop
+        task.stop();
+        Thread.sleep(1500);
+        assertTrue(processed.isEmpty());
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static boolean await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    @Test
+    void priorityOk() throws Exception {
+        assertEquals(List.of("URGENT_1.json", "URGENT_2.json", "file0.json", "file1.json"), processOrder(60000, 0));
+    }
+
+    @Test
+    void priorityAgingOk() throws Exception {
+        // the files of low priority waiting longer than the aging of the priority gap go first
+        assertEquals(List.of("file0.json", "file1.json", "URGENT_1.json", "URGENT_2.json"), processOrder(1, 100));
+    }
+
+    private List<String> processOrder(final long agingDelay, final long wait) throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<String> processed = new CopyOnWriteArrayList<>();
+        final TestTask task = new TestTask(directory, JSON, executor) {
+            @Override
+            protected void process(Path file) {
+                processed.add(file.getFileName().toString());
+            }
+            @Override
+            protected FilePrioritizer filePrioritizer() {
+                return new FilePrioritizers().rule(PathFilters.glob("URGENT_*"), 10);
+            }
+            @Override
+            protected long priorityAgingDelay() {
+                return agingDelay;
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+        };
+        task.afterPropertiesSet();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the files wait behind a blocked command
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            task.startTask(Files.write(directory.resolve("file0.json"), new byte[1]));
+            task.startTask(Files.write(directory.resolve("file1.json"), new byte[1]));
+            Thread.sleep(wait);
+            task.startTask(Files.write(directory.resolve("URGENT_1.json"), new byte[1]));
+            task.startTask(Files.write(directory.resolve("URGENT_2.json"), new byte[1]));
+            release.countDown();
+            assertTrue(await(() -> processed.size() == 4));
+            return processed;
+        } finally {
+            task.stop();
+        }
+    }
+
+    @Test
+    void latencyOk() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected void process(Path file) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+        };
+        task.afterPropertiesSet();
+        try {
+            assertEquals(0, task.getOldestPendingAge());
+            task.startTask(Files.write(directory.resolve("file.json"), new byte[1]));
+            Thread.sleep(50);
+            // the file in process is pending since its arrival
+            assertTrue(task.getOldestPendingAge() >= 50);
+            release.countDown();
+            assertTrue(await(() -> task.getFileStates().isEmpty()));
+            assertEquals(0, task.getOldestPendingAge());
+            final LatencyTracker latencies = task.getLatencyTracker();
+            assertEquals(1, latencies.getHistogram(LatencyTracker.Stage.PROCESS).getCount());
+            assertTrue(latencies.getHistogram(LatencyTracker.Stage.PROCESS).getPercentile(50) >= 50);
+            assertEquals(1, latencies.getHistogram(LatencyTracker.Stage.TOTAL).getCount());
+            assertTrue(latencies.getHistogram(LatencyTracker.Stage.TOTAL).getPercentile(99) >= 50);
+        } finally {
+            task.stop();
+        }
+    }
+
+    @Test
+    void pipelineOk() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> completedBy = new CopyOnWriteArrayList<>();
+        final PipelineFilesBackgroundTask task = new PipelineFilesBackgroundTask(directory, JSON, executor) {
+            @Override
+            protected Pipeline createPipeline() {
+                return new Pipeline("test").stage("wait", 2, 2, (Path file) -> {
+                    release.await();
+                    return file;
+                });
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+            @Override
+            protected void afterTaskCompleted(Path file) {
+                completedBy.add(Thread.currentThread().getName());
+            }
+            @Override
+            protected Logger getLogger() {
+                return LOG;
+            }
+        };
+        task.afterPropertiesSet();
+        try {
+            final Path file0 = Files.write(directory.resolve("file0.json"), new byte[1]);
+            final Path file1 = Files.write(directory.resolve("file1.json"), new byte[1]);
+            task.startTask(file0);
+            task.startTask(file1);
+            // the thread of the executor is not held by the files in the pipeline
+            final CountDownLatch free = new CountDownLatch(1);
+            executor.execute(free::countDown);
+            assertTrue(free.await(1, TimeUnit.SECONDS));
+            assertEquals(FileState.Status.RUNNING, task.getFileState(file0).getStatus());
+            release.countDown();
+            // completed by the thread of the last stage
+            assertTrue(await(() -> task.getFileStates().isEmpty()));
+            assertEquals(2, completedBy.size());
+            assertTrue(completedBy.stream().allMatch(name -> name.startsWith("test-wait-")));
+        } finally {
+            task.stop();
+        }
+    }
+
+    @Test
+    void notifiedOk() throws Exception {
+        final StorageNotifier notifier = new StorageNotifier();
+        final List<Path> processed = new CopyOnWriteArrayList<>();
+        final TestTask task = new TestTask(directory, JSON) {
+            @Override
+            protected void process(Path file) throws IOException {
+                processed.add(file);
+            }
+            @Override
+            protected long minScanDelay() {
+                return 60000;
+            }
+            @Override
+            protected boolean purgeBeforeStart() {
+                return false;
+            }
+            @Override
+            protected StorageNotifier storageNotifier() {
+                return notifier;
+            }
+        };
+        task.afterPropertiesSet();
+        try {
+            assertTrue(await(() -> task.getLastScanTime() > 0));
+            // the next scan is not due before a minute, the files are handed off by the notifier
+            final Path file = Files.write(directory.resolve("file.json"), new byte[1]);
+            notifier.fileStored(file);
+            assertTrue(await(() -> processed.size() == 1));
+            assertEquals(directory.resolve("file.json"), processed.get(0));
+            notifier.fileStored(Files.write(directory.resolve("file.txt"), new byte[1]));
+            Files.createDirectories(directory.resolve("sub"));
+            notifier.fileStored(Files.write(directory.resolve("sub").resolve("file.json"), new byte[1]));
+            task.pause();
+            notifier.fileStored(Files.write(directory.resolve("paused.json"), new byte[1]));
+            Thread.sleep(100);
+            assertEquals(1, processed.size());
+            assertTrue(task.getFileStates().isEmpty());
+        } finally {
+            task.stop();
+        }
+        // the stopped task is unregistered
+        assertTrue(notifier.isEmpty());
+    }
+
+    static class TestTask extends SimpleFilesBackgroundTask {
+
+        TestTask(Path path, FileFilter filter) {
+            this(path, filter, Executors.newFixedThreadPool(2));
+        }
+
+        TestTask(Path path, FileFilter filter, Executor executor) {
+            super(path, filter, executor);
+        }
+
+        @Override
+        protected void process(Path file) throws IOException {
+            // the files are kept
+        }
+
+        @Override
+        protected Logger getLogger() {
+            return LOG;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flcit.springboot.commons.storage.usage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.flcit.springboot.commons.storage.exception.StorageException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StorageUsageTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reconcileOk() throws Exception {
+        final StorageUsage usage = new StorageUsage(directory, 0);
+        final DirectoryUsage sub = usage.track(Path.of("sub"), 10);
+        Files.write(Files.createDirectories(directory.resolve("sub")).resolve("external.json"), new byte[3]);
+        final Path file = directory.resolve("sub").resolve("test.json");
+        usage.changing(file);
+        Files.write(file, new byte[2]);
+        usage.added(file, 2, 1);
+        assertEquals(2, sub.getBytes());
+        usage.run();
+        assertTrue(sub.getLastReconciliation() > 0);
+        assertEquals(5, sub.getBytes());
+        assertEquals(2, sub.getFiles());
+        assertEquals(5, usage.getUsage(directory).getBytes());
+        assertThrows(StorageException.class, () -> usage.checkQuota(file, 6));
+    }
+
+    @Test
+    void movedOk() throws Exception {
+        final StorageUsage usage = new StorageUsage(directory, 0);
+        final DirectoryUsage source = usage.track(Path.of("source"), -1);
+        final DirectoryUsage target = usage.track(Path.of("target"), -1);
+        usage.added(directory.resolve("source").resolve("test.json"), 4, 1);
+        usage.moved(directory.resolve("source").resolve("test.json"), directory.resolve("target").resolve("test.json"), 4, 1);
+        assertEquals(0, source.getBytes());
+        assertEquals(4, target.getBytes());
+        assertEquals(1, target.getFiles());
+        assertEquals(4, usage.getUsage(directory).getBytes());
+    }
+
+}